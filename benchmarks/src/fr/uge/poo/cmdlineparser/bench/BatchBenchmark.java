@@ -0,0 +1,54 @@
+package fr.uge.poo.cmdlineparser.bench;
+
+import fr.uge.poo.cmdlineparser.ex6.CmdLineParser;
+import fr.uge.poo.cmdlineparser.ex6.CompiledCmdLineParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batches of command lines processed by a shared compiled parser, with 1 to N threads,
+ * to check that the throughput of {@link CompiledCmdLineParser#processAll(List, ForkJoinPool)} follows the cores.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private ForkJoinPool pool;
+    private CompiledCmdLineParser parser;
+    private List<String[]> commandLines;
+
+    @Setup
+    public void setup() {
+        var scenario = Scenario.mixed(100, Scenario.Shape.SHORT);
+        var cmdLineParser = new CmdLineParser();
+        scenario.options().forEach(opt -> cmdLineParser.addOption(
+                new CmdLineParser.Option.OptionsBuilder(opt.name(), opt.nbParameters(), Engine.Sink::consume).build()));
+        parser = cmdLineParser.compile();
+        commandLines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            commandLines.add(scenario.arguments());
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<CompiledCmdLineParser.Outcome> processAll() {
+        return parser.processAll(commandLines, pool);
+    }
+}
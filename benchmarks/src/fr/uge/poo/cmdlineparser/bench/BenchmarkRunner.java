@@ -0,0 +1,23 @@
+package fr.uge.poo.cmdlineparser.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run every benchmark with the GC profiler, so the allocation rate (gc.alloc.rate.norm)
+ * is reported next to the throughput and the average time.
+ * An optional first argument restricts the benchmarks run, as a regular expression.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        var include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*";
+        var options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
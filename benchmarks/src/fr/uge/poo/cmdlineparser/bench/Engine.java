@@ -0,0 +1,175 @@
+package fr.uge.poo.cmdlineparser.bench;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The successive parser implementations (ex1 to ex6) seen through a common interface,
+ * so the same scenario can be measured against every engine.
+ */
+public enum Engine {
+    EX1 {
+        @Override
+        Parser create() {
+            var parser = new fr.uge.poo.cmdlineparser.ex1.CmdLineParser();
+            return new Parser() {
+                @Override
+                public void register(String name, int nbParameters, String... aliases) {
+                    // ex1 only knows flags, the parameters are returned as files
+                    parser.addFlag(name, Sink::touch);
+                }
+
+                @Override
+                public List<String> process(String[] arguments) {
+                    return parser.process(arguments);
+                }
+            };
+        }
+    },
+    EX2 {
+        @Override
+        Parser create() {
+            var parser = new fr.uge.poo.cmdlineparser.ex2.CmdLineParser();
+            return new Parser() {
+                @Override
+                public void register(String name, int nbParameters, String... aliases) {
+                    if (nbParameters == 0) {
+                        parser.addFlag(name, Sink::touch);
+                        return;
+                    }
+                    parser.addOptionWithOneParameter(name, it -> {
+                        for (int i = 0; i < nbParameters; i++)
+                            Sink.consume(it.next());
+                    });
+                }
+
+                @Override
+                public List<String> process(String[] arguments) {
+                    return parser.process(arguments);
+                }
+            };
+        }
+    },
+    EX3 {
+        @Override
+        Parser create() {
+            var parser = new fr.uge.poo.cmdlineparser.ex3.CmdLineParser();
+            return new Parser() {
+                @Override
+                public void register(String name, int nbParameters, String... aliases) {
+                    if (nbParameters == 0) {
+                        parser.addFlag(name, Sink::touch);
+                        return;
+                    }
+                    parser.addOptionWithOneParameter(name, it -> {
+                        for (int i = 0; i < nbParameters; i++)
+                            Sink.consume(it.next());
+                    });
+                }
+
+                @Override
+                public List<String> process(String[] arguments) {
+                    return parser.process(arguments);
+                }
+            };
+        }
+    },
+    EX4 {
+        @Override
+        Parser create() {
+            var parser = new fr.uge.poo.cmdlineparser.ex4.CmdLineParser();
+            return new Parser() {
+                @Override
+                public void register(String name, int nbParameters, String... aliases) {
+                    parser.registerWithParameters(name, nbParameters, Sink::consume);
+                }
+
+                @Override
+                public List<String> process(String[] arguments) {
+                    return parser.process(arguments);
+                }
+            };
+        }
+    },
+    EX5 {
+        @Override
+        Parser create() {
+            var parser = new fr.uge.poo.cmdlineparser.ex5.CmdLineParser();
+            return new Parser() {
+                @Override
+                public void register(String name, int nbParameters, String... aliases) {
+                    parser.addOption(new fr.uge.poo.cmdlineparser.ex5.CmdLineParser.Option.OptionsBuilder(name, nbParameters, Sink::consume)
+                            .addAliases(aliases)
+                            .build());
+                }
+
+                @Override
+                public List<String> process(String[] arguments) {
+                    return parser.process(arguments);
+                }
+            };
+        }
+    },
+    EX6 {
+        @Override
+        Parser create() {
+            var parser = new fr.uge.poo.cmdlineparser.ex6.CmdLineParser();
+            return new Parser() {
+                @Override
+                public void register(String name, int nbParameters, String... aliases) {
+                    parser.addOption(new fr.uge.poo.cmdlineparser.ex6.CmdLineParser.Option.OptionsBuilder(name, nbParameters, Sink::consume)
+                            .addAliases(aliases)
+                            .build());
+                }
+
+                @Override
+                public List<String> process(String[] arguments) {
+                    return parser.process(arguments);
+                }
+            };
+        }
+    };
+
+    /**
+     * Minimal view of a parser, every engine implements it with its own registration methods
+     */
+    public interface Parser {
+        void register(String name, int nbParameters, String... aliases);
+
+        List<String> process(String[] arguments);
+    }
+
+    abstract Parser create();
+
+    /**
+     * Create a parser of this engine with the options described by the scenario
+     *
+     * @param scenario
+     * @return a parser ready to process the arguments of the scenario
+     */
+    public Parser create(Scenario scenario) {
+        Objects.requireNonNull(scenario);
+        var parser = create();
+        scenario.options().forEach(opt -> parser.register(opt.name(), opt.nbParameters(), opt.aliases()));
+        return parser;
+    }
+
+    /**
+     * Somewhere for the actions to write to, so the JIT can not remove them
+     */
+    static final class Sink {
+        static volatile int value;
+
+        static void touch() {
+            value++;
+        }
+
+        static void consume(String parameter) {
+            value += parameter.length();
+        }
+
+        static void consume(List<String> parameters) {
+            value += parameters.size();
+        }
+    }
+}
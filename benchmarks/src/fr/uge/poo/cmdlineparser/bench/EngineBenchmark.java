@@ -0,0 +1,42 @@
+package fr.uge.poo.cmdlineparser.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Same command lines processed by every engine, from ex1 to ex6.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+
+    @Param({"EX1", "EX2", "EX3", "EX4", "EX5", "EX6"})
+    private Engine engine;
+
+    @Param({"10", "100", "1000", "10000"})
+    private int nbOptions;
+
+    @Param({"SHORT", "LONG"})
+    private Scenario.Shape shape;
+
+    private Engine.Parser parser;
+    private String[] arguments;
+
+    @Setup
+    public void setup() {
+        var scenario = Scenario.mixed(nbOptions, shape);
+        parser = engine.create(scenario);
+        arguments = scenario.arguments();
+    }
+
+    @Benchmark
+    public List<String> process() {
+        return parser.process(arguments);
+    }
+}
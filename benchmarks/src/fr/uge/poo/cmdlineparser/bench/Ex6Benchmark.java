@@ -0,0 +1,83 @@
+package fr.uge.poo.cmdlineparser.bench;
+
+import fr.uge.poo.cmdlineparser.ex6.CmdLineParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scenarios only the latest engine supports : aliases, abbreviations and options taking many parameters.
+ * Used to follow the evolution of {@link fr.uge.poo.cmdlineparser.ex6.CmdLineParser#process(String[])}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Ex6Benchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int nbOptions;
+
+    @Param({"SHORT", "LONG"})
+    private Scenario.Shape shape;
+
+    private Engine.Parser aliasesParser;
+    private String[] aliasesArguments;
+    private CmdLineParser abbreviationsParser;
+    private CmdLineParser cachedParser;
+    private Engine.Parser parametersParser;
+    private String[] parametersArguments;
+
+    @Setup
+    public void setup() {
+        var aliases = Scenario.aliases(nbOptions, shape);
+        aliasesParser = Engine.EX6.create(aliases);
+        aliasesArguments = aliases.arguments();
+        abbreviationsParser = ex6Parser(aliases);
+        abbreviationsParser.enableAbbreviations();
+        cachedParser = ex6Parser(aliases);
+        cachedParser.enableParseCache(16);
+        var parameters = Scenario.parameters(nbOptions, shape, 8);
+        parametersParser = Engine.EX6.create(parameters);
+        parametersArguments = parameters.arguments();
+    }
+
+    @Benchmark
+    public List<String> aliases() {
+        return aliasesParser.process(aliasesArguments);
+    }
+
+    /**
+     * Same as {@link #aliases()}, the names are looked up in the prefix trie instead of the hash table
+     */
+    @Benchmark
+    public List<String> aliasesWithAbbreviations() {
+        return abbreviationsParser.process(aliasesArguments);
+    }
+
+    /**
+     * Same as {@link #aliases()}, the command line is validated once then replayed from the parse cache
+     */
+    @Benchmark
+    public List<String> aliasesFromCache() {
+        return cachedParser.process(aliasesArguments);
+    }
+
+    @Benchmark
+    public List<String> manyParameters() {
+        return parametersParser.process(parametersArguments);
+    }
+
+    private static CmdLineParser ex6Parser(Scenario scenario) {
+        var parser = new CmdLineParser();
+        for (var opt : scenario.options()) {
+            parser.addOption(new CmdLineParser.Option.OptionsBuilder(opt.name(), opt.nbParameters(), Engine.Sink::consume)
+                    .addAliases(opt.aliases())
+                    .build());
+        }
+        return parser;
+    }
+}
@@ -0,0 +1,43 @@
+package fr.uge.poo.cmdlineparser.bench;
+
+import fr.uge.poo.cmdlineparser.ex6.Application;
+import fr.uge.poo.cmdlineparser.ex6.CmdLineParser;
+import fr.uge.poo.cmdlineparser.ex6.PaintSettings;
+import fr.uge.poo.cmdlineparser.ex6.PaintSettingsBuilderParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The command line of {@link Application} processed as a short-lived tool does it : the parser is
+ * built then used once, either at runtime by {@link Application#createCmdLineParser}, bound at
+ * runtime to the annotations of {@link PaintSettings.PaintSettingsBuilder}, or generated from them.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeneratedParserBenchmark {
+    private final String[] arguments = {"-l", "-no-borders", "-window-name", "filename1", "-border-width", "4",
+            "-min-size", "600", "600", "-remote-server", "localhost", "8080"};
+
+    @Benchmark
+    public List<String> runtime() {
+        return Application.createCmdLineParser(new PaintSettings.PaintSettingsBuilder()).process(arguments);
+    }
+
+    @Benchmark
+    public List<String> bound() {
+        var cmdLineParser = new CmdLineParser();
+        cmdLineParser.bind(new PaintSettings.PaintSettingsBuilder());
+        return cmdLineParser.process(arguments);
+    }
+
+    @Benchmark
+    public List<String> generated() {
+        return PaintSettingsBuilderParser.process(arguments, new PaintSettings.PaintSettingsBuilder());
+    }
+}
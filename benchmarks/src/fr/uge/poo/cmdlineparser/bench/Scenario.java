@@ -0,0 +1,107 @@
+package fr.uge.poo.cmdlineparser.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A set of registered options together with the argument vector given to process
+ *
+ * @param options   the options to register on the parser
+ * @param arguments the command line to process
+ */
+public record Scenario(List<OptionSpec> options, String[] arguments) {
+
+    public record OptionSpec(String name, int nbParameters, String... aliases) {
+        public OptionSpec {
+            Objects.requireNonNull(name);
+            Objects.requireNonNull(aliases);
+            if (nbParameters < 0)
+                throw new IllegalArgumentException("nbParameters must be higher than 0");
+        }
+    }
+
+    public enum Shape {
+        /**
+         * A handful of tokens, what a human types
+         */
+        SHORT(4),
+        /**
+         * Thousands of tokens, what a build tool generates
+         */
+        LONG(2_000);
+
+        private final int nbOptionsUsed;
+
+        Shape(int nbOptionsUsed) {
+            this.nbOptionsUsed = nbOptionsUsed;
+        }
+    }
+
+    public Scenario {
+        options = List.copyOf(options);
+        Objects.requireNonNull(arguments);
+    }
+
+    /**
+     * Half flags, half options with one parameter, plus a file every ten options.
+     *
+     * @param nbOptions number of registered options
+     * @param shape     length of the argument vector
+     * @return the scenario
+     */
+    public static Scenario mixed(int nbOptions, Shape shape) {
+        return create(nbOptions, shape, i -> i % 2, false);
+    }
+
+    /**
+     * Every option has two aliases and the argument vector only uses the aliases
+     *
+     * @param nbOptions number of registered options
+     * @param shape     length of the argument vector
+     * @return the scenario
+     */
+    public static Scenario aliases(int nbOptions, Shape shape) {
+        return create(nbOptions, shape, i -> i % 2, true);
+    }
+
+    /**
+     * Every option takes {@code nbParameters} parameters
+     *
+     * @param nbOptions    number of registered options
+     * @param shape        length of the argument vector
+     * @param nbParameters number of parameters of each option
+     * @return the scenario
+     */
+    public static Scenario parameters(int nbOptions, Shape shape, int nbParameters) {
+        return create(nbOptions, shape, __ -> nbParameters, false);
+    }
+
+    private interface Arity {
+        int of(int index);
+    }
+
+    private static Scenario create(int nbOptions, Shape shape, Arity arity, boolean useAliases) {
+        Objects.requireNonNull(shape);
+        if (nbOptions <= 0)
+            throw new IllegalArgumentException("nbOptions must be higher than 0");
+        var options = new ArrayList<OptionSpec>();
+        for (int i = 0; i < nbOptions; i++) {
+            options.add(new OptionSpec("-option-" + i, arity.of(i), "-o" + i, "-alias-" + i));
+        }
+        var arguments = new ArrayList<String>();
+        // spread the used options over the whole set, with a stride coprime with most sizes
+        for (int i = 0; i < shape.nbOptionsUsed; i++) {
+            var index = (int) ((i * 7_919L) % nbOptions);
+            var opt = options.get(index);
+            arguments.add(useAliases ? opt.aliases()[i % 2] : opt.name());
+            for (int p = 0; p < opt.nbParameters(); p++) {
+                arguments.add("value" + p);
+            }
+            if (i % 10 == 9) {
+                arguments.add("file" + i);
+            }
+        }
+        return new Scenario(options, arguments.toArray(String[]::new));
+    }
+}
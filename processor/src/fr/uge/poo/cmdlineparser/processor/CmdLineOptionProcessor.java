@@ -0,0 +1,375 @@
+package fr.uge.poo.cmdlineparser.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates a parser for each class having methods annotated with
+ * {@code fr.uge.poo.cmdlineparser.ex6.CmdLineOption}.
+ * <p>
+ * The generated class is a plain switch on the option names calling the setters with the
+ * converted parameters : no lambda, no observer, no map is created when it runs, and it
+ * reports the errors with the same exceptions and messages as the ex6 {@code CmdLineParser}.
+ * <p>
+ * The annotation is read by name, so this module does not depend on the code it processes.
+ */
+public final class CmdLineOptionProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "fr.uge.poo.cmdlineparser.ex6.CmdLineOption";
+
+    /**
+     * How the arguments of the command line are converted to a parameter of a setter
+     */
+    private enum Kind {
+        STRING(1, "%s"),
+        INT(1, "Integer.parseInt(%s)"),
+        LONG(1, "Long.parseLong(%s)"),
+        DOUBLE(1, "Double.parseDouble(%s)"),
+        BOOLEAN(1, "Boolean.parseBoolean(%s)"),
+        SOCKET_ADDRESS(2, "new java.net.InetSocketAddress(%s, Integer.parseInt(%s))");
+
+        private final int nbArguments;
+        private final String conversion;
+
+        Kind(int nbArguments, String conversion) {
+            this.nbArguments = nbArguments;
+            this.conversion = conversion;
+        }
+    }
+
+    /**
+     * An annotated setter
+     *
+     * @param name
+     * @param aliases
+     * @param required
+     * @param doc the documentation, or null
+     * @param setter
+     * @param kinds the conversion of each parameter of the setter, empty for a flag
+     */
+    private record OptionModel(String name, List<String> aliases, boolean required, String doc,
+                               String setter, List<Kind> kinds) {
+        int nbParameters() {
+            return kinds.stream().mapToInt(kind -> kind.nbArguments).sum();
+        }
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Set.of(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        var setters = new LinkedHashMap<TypeElement, List<ExecutableElement>>();
+        for (var annotation : annotations) {
+            for (var element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                // the components of a record are bound at runtime
+                if (element.getKind() == ElementKind.RECORD_COMPONENT || element.getEnclosingElement().getKind() == ElementKind.RECORD)
+                    continue;
+                if (element.getKind() != ElementKind.METHOD) {
+                    error(element, "Only a method can declare an option");
+                    continue;
+                }
+                setters.computeIfAbsent((TypeElement) element.getEnclosingElement(), __ -> new ArrayList<>())
+                        .add((ExecutableElement) element);
+            }
+        }
+        setters.forEach(this::generate);
+        return true;
+    }
+
+    private void generate(TypeElement builder, List<ExecutableElement> setters) {
+        if (!isAccessible(builder)) {
+            error(builder, "The class declaring options should be a non generic top level or static class, not private");
+            return;
+        }
+        var options = new ArrayList<OptionModel>();
+        var names = new HashSet<String>();
+        var valid = true;
+        for (var setter : setters) {
+            var option = toModel(setter);
+            if (option == null) {
+                valid = false;
+                continue;
+            }
+            for (var name : names(option)) {
+                if (name.length() < 2 || name.charAt(0) != '-') {
+                    error(setter, "'" + name + "' should start with '-'");
+                    valid = false;
+                } else if (!names.add(name)) {
+                    error(setter, "Option " + name + " is already registered.");
+                    valid = false;
+                }
+            }
+            options.add(option);
+        }
+        if (!valid)
+            return;
+        var packageName = processingEnv.getElementUtils().getPackageOf(builder).getQualifiedName().toString();
+        var className = builder.getSimpleName() + "Parser";
+        var source = generateSource(packageName, className, builder.getQualifiedName().toString(), options);
+        try {
+            var file = processingEnv.getFiler().createSourceFile(packageName.isEmpty() ? className : packageName + "." + className, builder);
+            try (var writer = file.openWriter()) {
+                writer.write(source);
+            }
+        } catch (IOException e) {
+            error(builder, "Can not write " + className + " : " + e.getMessage());
+        }
+    }
+
+    private static boolean isAccessible(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || !type.getTypeParameters().isEmpty()
+                || type.getModifiers().contains(Modifier.PRIVATE))
+            return false;
+        if (type.getNestingKind() == NestingKind.TOP_LEVEL)
+            return true;
+        return type.getNestingKind() == NestingKind.MEMBER && type.getModifiers().contains(Modifier.STATIC)
+                && isAccessible((TypeElement) type.getEnclosingElement());
+    }
+
+    private OptionModel toModel(ExecutableElement setter) {
+        var modifiers = setter.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)) {
+            error(setter, "An option should be declared on a non private instance method");
+            return null;
+        }
+        var kinds = new ArrayList<Kind>();
+        for (var parameter : setter.getParameters()) {
+            var kind = kindOf(parameter.asType());
+            if (kind == null) {
+                error(parameter, "Parameters of type " + parameter.asType() + " are not supported");
+                return null;
+            }
+            kinds.add(kind);
+        }
+        if (kinds.isEmpty()) {
+            error(setter, "An option should be declared on a method with parameters");
+            return null;
+        }
+        if (kinds.equals(List.of(Kind.BOOLEAN)))
+            kinds.clear();
+        var mirror = mirrorOf(setter);
+        var name = (String) value(mirror, "value");
+        @SuppressWarnings("unchecked")
+        var aliases = ((List<? extends AnnotationValue>) value(mirror, "aliases")).stream()
+                .map(alias -> (String) alias.getValue())
+                .toList();
+        var required = (Boolean) value(mirror, "required");
+        var doc = (String) value(mirror, "doc");
+        return new OptionModel(name, aliases, required, doc.isEmpty() ? null : doc, setter.getSimpleName().toString(), kinds);
+    }
+
+    private static List<String> names(OptionModel option) {
+        var names = new ArrayList<String>();
+        names.add(option.name);
+        names.addAll(option.aliases);
+        return names;
+    }
+
+    private static Kind kindOf(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return Kind.INT;
+            case LONG:
+                return Kind.LONG;
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case DECLARED:
+                var name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+                return switch (name) {
+                    case "java.lang.String" -> Kind.STRING;
+                    case "java.net.InetSocketAddress" -> Kind.SOCKET_ADDRESS;
+                    default -> null;
+                };
+            default:
+                return null;
+        }
+    }
+
+    private static AnnotationMirror mirrorOf(Element element) {
+        return element.getAnnotationMirrors().stream()
+                .filter(mirror -> ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private Object value(AnnotationMirror mirror, String name) {
+        return processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet().stream()
+                .filter(entry -> entry.getKey().getSimpleName().contentEquals(name))
+                .map(entry -> entry.getValue().getValue())
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    static String generateSource(String packageName, String className, String builderName, List<OptionModel> options) {
+        Objects.requireNonNull(packageName);
+        var source = new StringBuilder();
+        if (!packageName.isEmpty())
+            source.append("package ").append(packageName).append(";\n\n");
+        source.append("""
+                /**
+                 * Parser generated from the options declared on {@link %2$s}
+                 */
+                @javax.annotation.processing.Generated("%3$s")
+                public final class %1$s {
+                    private %1$s() {
+                        throw new AssertionError();
+                    }
+
+                    private static void checkParameters(String[] arguments, int index, int nbParameters) {
+                        if (arguments.length - index - 1 < nbParameters)
+                            throw new IllegalArgumentException("The number of parameters and number of parameters given should be equals");
+                    }
+
+                    /**
+                     * Process the arguments, calling the setters of the builder for each option
+                     *
+                     * @param arguments
+                     * @param builder
+                     * @return the arguments which are not options
+                     */
+                    public static java.util.List<String> process(String[] arguments, %2$s builder) {
+                        java.util.Objects.requireNonNull(arguments);
+                        java.util.Objects.requireNonNull(builder);
+                        var files = new java.util.ArrayList<String>();
+                """.formatted(className, builderName, CmdLineOptionProcessor.class.getName()));
+        for (int i = 0; i < options.size(); i++) {
+            if (options.get(i).required)
+                source.append("        var seen").append(i).append(" = false;\n");
+        }
+        source.append("""
+                        for (int i = 0; i < arguments.length; i++) {
+                            var arg = arguments[i];
+                            if (arg.isEmpty() || arg.charAt(0) != '-') {
+                                files.add(arg);
+                                continue;
+                            }
+                            switch (arg) {
+                """);
+        for (int i = 0; i < options.size(); i++) {
+            var option = options.get(i);
+            source.append("                case ")
+                    .append(String.join(", ", names(option).stream().map(CmdLineOptionProcessor::literal).toList()))
+                    .append(" -> {\n");
+            var nbParameters = option.nbParameters();
+            if (nbParameters != 0)
+                source.append("                    checkParameters(arguments, i, ").append(nbParameters).append(");\n");
+            source.append("                    try {\n")
+                    .append("                        builder.").append(option.setter).append('(').append(call(option)).append(");\n")
+                    .append("                    } catch (RuntimeException e) {\n")
+                    .append("                        throw new IllegalStateException(\"Error while applying option on parameters\", e);\n")
+                    .append("                    }\n");
+            if (nbParameters != 0)
+                source.append("                    i += ").append(nbParameters).append(";\n");
+            if (option.required)
+                source.append("                    seen").append(i).append(" = true;\n");
+            source.append("                }\n");
+        }
+        source.append("""
+                                default -> throw new IllegalArgumentException("'" + arg + "' is not an option");
+                            }
+                        }
+                """);
+        for (int i = 0; i < options.size(); i++) {
+            var option = options.get(i);
+            if (option.required)
+                source.append("        if (!seen").append(i).append(")\n")
+                        .append("            throw new IllegalStateException(")
+                        .append(literal("A required option has not been used : " + option.name)).append(");\n");
+        }
+        source.append("""
+                        return files;
+                    }
+
+                    /**
+                     * @return the options and their documentation, as printed by CmdLineParser.usage()
+                     */
+                    public static String usage() {
+                        return %s;
+                    }
+                }
+                """.formatted(literal(usage(options))));
+        return source.toString();
+    }
+
+    private static String call(OptionModel option) {
+        if (option.kinds.isEmpty())
+            return "true";
+        var arguments = new ArrayList<String>();
+        var index = 1;
+        for (var kind : option.kinds) {
+            var indices = new Object[kind.nbArguments];
+            for (int i = 0; i < kind.nbArguments; i++) {
+                indices[i] = "arguments[i + " + index++ + "]";
+            }
+            arguments.add(kind.conversion.formatted(indices));
+        }
+        return String.join(", ", arguments);
+    }
+
+    private static String usage(List<OptionModel> options) {
+        var docs = new TreeMap<String, String>();
+        for (var option : options) {
+            docs.put(option.name, option.doc);
+        }
+        var usage = new StringBuilder("List of the options registered :\n");
+        docs.forEach((name, doc) -> {
+            usage.append(' ').append(name);
+            if (doc != null)
+                usage.append(", \"").append(doc).append('"');
+            usage.append('\n');
+        });
+        return usage.toString();
+    }
+
+    private static String literal(String value) {
+        var literal = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                default -> {
+                    if (c < ' ' || c > '~')
+                        literal.append("\\u").append("%04x".formatted((int) c));
+                    else
+                        literal.append(c);
+                }
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
@@ -19,9 +19,9 @@ public class Application {
                 }).doc("Set border to the drawing window").build()
         );
         cmdLineParser.addOption(
-                new CmdLineParser.Option.OptionsBuilder("-border-width", 1, (argList) -> {
-                    optionsBuilder.setBorderWidth(Integer.parseInt(argList.get(0)));
-                }).build()
+                new CmdLineParser.Option.OptionsBuilder("-border-width", 1)
+                        .setIntConsumer(optionsBuilder::setBorderWidth)
+                        .build()
         );
         cmdLineParser.addOption(
                 new CmdLineParser.Option.OptionsBuilder("-window-name", 1, (argList) -> {
@@ -29,10 +29,12 @@ public class Application {
                 }).isRequired().doc("Set the name of the graphic window").build()
         );
         cmdLineParser.addOption(
-                new CmdLineParser.Option.OptionsBuilder("-min-size", 2, (argList) -> {
-                    optionsBuilder.setWindowWidth(Integer.parseInt(argList.get(0)));
-                    optionsBuilder.setWindowHeight(Integer.parseInt(argList.get(1)));
-                }).isRequired().build()
+                new CmdLineParser.Option.OptionsBuilder("-min-size", 2)
+                        .setIntBiConsumer((width, height) -> {
+                            optionsBuilder.setWindowWidth(width);
+                            optionsBuilder.setWindowHeight(height);
+                        })
+                        .isRequired().build()
         );
         cmdLineParser.addOption(
                 new CmdLineParser.Option.OptionsBuilder("-remote-server", 2, (argList) -> {
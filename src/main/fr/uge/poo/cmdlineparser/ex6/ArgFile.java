@@ -0,0 +1,285 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Expansion of the response files : an argument {@code @path} is replaced by the arguments
+ * written in the file, which may itself contain {@code @path} arguments, up to {@link #MAX_DEPTH}
+ * files deep. A file including itself, directly or not, is rejected.
+ * <p>
+ * The file is memory mapped and tokenized in place, each argument is a {@link CharSequence}
+ * reading the mapped bytes (UTF-8), which becomes a String only if it is asked to.
+ */
+public final class ArgFile {
+    /**
+     * Maximum number of argument files opened at the same time
+     */
+    public static final int MAX_DEPTH = 8;
+
+    public enum Mode {
+        /**
+         * Each line is one argument, as is, the empty lines are ignored
+         */
+        LINES,
+        /**
+         * The arguments are separated by whitespaces, they can be quoted with ' or "
+         * and a \ escapes the next character, except inside single quotes
+         */
+        WHITESPACE
+    }
+
+    private ArgFile() {
+        throw new AssertionError();
+    }
+
+    /**
+     * @param argument
+     * @return true if the argument names an argument file
+     */
+    static boolean isArgFile(CharSequence argument) {
+        return argument.length() > 1 && argument.charAt(0) == '@';
+    }
+
+    /**
+     * Lazily replace the {@code @path} arguments by the content of the files
+     *
+     * @param arguments
+     * @param mode how the files are split into arguments
+     * @return the expanded arguments
+     */
+    static Iterator<CharSequence> expand(Iterator<? extends CharSequence> arguments, Mode mode) {
+        Objects.requireNonNull(arguments);
+        Objects.requireNonNull(mode);
+        return new Expander(arguments, mode);
+    }
+
+    private static final class Expander implements Iterator<CharSequence> {
+        private final Iterator<? extends CharSequence> arguments;
+        private final Mode mode;
+        private final ArrayDeque<Tokenizer> files = new ArrayDeque<>();
+        private CharSequence next;
+
+        private Expander(Iterator<? extends CharSequence> arguments, Mode mode) {
+            this.arguments = arguments;
+            this.mode = mode;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                var argument = read();
+                if (argument == null)
+                    return false;
+                if (isArgFile(argument))
+                    open(argument.subSequence(1, argument.length()).toString());
+                else
+                    next = argument;
+            }
+            return true;
+        }
+
+        private CharSequence read() {
+            while (!files.isEmpty()) {
+                var token = files.peek().next();
+                if (token != null)
+                    return token;
+                files.pop();
+            }
+            return arguments.hasNext() ? Objects.requireNonNull(arguments.next()) : null;
+        }
+
+        private void open(String name) {
+            if (files.size() == MAX_DEPTH)
+                throw ParseError.argumentFile("Argument file " + name + " is nested more than " + MAX_DEPTH + " files deep", null).exception();
+            try {
+                var path = Path.of(name).toRealPath();
+                for (var file : files) {
+                    if (file.path.equals(path))
+                        throw ParseError.argumentFile("Argument file " + name + " includes itself", null).exception();
+                }
+                try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    files.push(new Tokenizer(path, buffer, mode));
+                }
+            } catch (IOException e) {
+                throw ParseError.argumentFile("Argument file " + name + " can not be read", e).exception();
+            }
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            var argument = next;
+            next = null;
+            return argument;
+        }
+    }
+
+    /**
+     * Splits a mapped file into tokens, without copying it
+     */
+    private static final class Tokenizer {
+        private final Path path;
+        private final ByteBuffer buffer;
+        private final Mode mode;
+        private int position;
+
+        private Tokenizer(Path path, ByteBuffer buffer, Mode mode) {
+            this.path = path;
+            this.buffer = buffer;
+            this.mode = mode;
+        }
+
+        /**
+         * @return the next token, or null at the end of the file
+         */
+        Token next() {
+            return switch (mode) {
+                case LINES -> nextLine();
+                case WHITESPACE -> nextWord();
+            };
+        }
+
+        private Token nextLine() {
+            var limit = buffer.limit();
+            while (position < limit) {
+                var start = position;
+                var simple = true;
+                while (position < limit && buffer.get(position) != '\n') {
+                    simple &= buffer.get(position) >= 0;
+                    position++;
+                }
+                var end = position;
+                position++;
+                if (end > start && buffer.get(end - 1) == '\r')
+                    end--;
+                if (end > start)
+                    return new Token(buffer, start, end, simple ? Token.SIMPLE : Token.UTF8);
+            }
+            return null;
+        }
+
+        private Token nextWord() {
+            var limit = buffer.limit();
+            while (position < limit && isWhitespace(buffer.get(position))) {
+                position++;
+            }
+            if (position == limit)
+                return null;
+            var start = position;
+            var kind = Token.SIMPLE;
+            var quote = 0;
+            for (; position < limit; position++) {
+                var b = buffer.get(position);
+                if (b < 0 && kind == Token.SIMPLE) {
+                    kind = Token.UTF8;
+                }
+                if (quote != 0) {
+                    if (b == quote)
+                        quote = 0;
+                    else if (b == '\\' && quote == '"')
+                        position++;
+                    continue;
+                }
+                if (isWhitespace(b))
+                    break;
+                if (b == '"' || b == '\'') {
+                    quote = b;
+                    kind = Token.QUOTED;
+                } else if (b == '\\') {
+                    kind = Token.QUOTED;
+                    position++;
+                }
+            }
+            if (quote != 0)
+                throw ParseError.argumentFile("Unterminated quote in argument file " + path, null).exception();
+            return new Token(buffer, start, Math.min(position, limit), kind);
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+        }
+    }
+
+    /**
+     * An argument read from a mapped file. A simple token (ASCII, without quotes nor escapes)
+     * is read directly from the bytes, the others are decoded once, when first read.
+     */
+    private static final class Token implements CharSequence {
+        private static final int SIMPLE = 0;
+        private static final int UTF8 = 1;
+        private static final int QUOTED = 2;
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+        private final int kind;
+        private String value;
+
+        private Token(ByteBuffer buffer, int start, int end, int kind) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.kind = kind;
+        }
+
+        @Override
+        public int length() {
+            return kind == SIMPLE ? end - start : toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (kind != SIMPLE)
+                return toString().charAt(index);
+            Objects.checkIndex(index, end - start);
+            return (char) buffer.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            var value = this.value;
+            if (value == null) {
+                var bytes = new byte[end - start];
+                buffer.get(start, bytes);
+                value = kind == QUOTED ? unquote(bytes) : new String(bytes, StandardCharsets.UTF_8);
+                this.value = value;
+            }
+            return value;
+        }
+
+        private static String unquote(byte[] bytes) {
+            var unquoted = new byte[bytes.length];
+            var length = 0;
+            var quote = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                var b = bytes[i];
+                if (quote == 0 && (b == '"' || b == '\'')) {
+                    quote = b;
+                } else if (quote != 0 && b == quote) {
+                    quote = 0;
+                } else if (b == '\\' && quote != '\'' && i + 1 < bytes.length) {
+                    unquoted[length++] = bytes[++i];
+                } else {
+                    unquoted[length++] = b;
+                }
+            }
+            return new String(unquoted, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link LogSink} which never blocks the parsing threads : the events are put in a bounded queue
+ * and a background thread formats them and writes them by batches, with one write per batch.
+ * When the queue is full the event is dropped and counted in {@link #dropped()}, as are the events
+ * logged once the sink is closed, so closing the sink never makes a parsing fail.
+ */
+public final class AsyncLogSink implements LogSink, Closeable {
+    private static final int MAX_BATCH_SIZE = 1_024;
+
+    private record Event(LogLevel level, String format, Object argument) {
+    }
+
+    private final Appendable appendable;
+    private final ArrayBlockingQueue<Event> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Create the sink and start its writer thread
+     *
+     * @param appendable where the lines are written, only by the writer thread
+     * @param capacity maximum number of events waiting to be written
+     */
+    public AsyncLogSink(Appendable appendable, int capacity) {
+        Objects.requireNonNull(appendable);
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be higher than 0");
+        this.appendable = appendable;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, "cmdlineparser-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void log(LogLevel level, String format, Object argument) {
+        Objects.requireNonNull(level);
+        Objects.requireNonNull(format);
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        var event = new Event(level, format, argument);
+        if (!queue.offer(event)) {
+            dropped.increment();
+            return;
+        }
+        // the sink may have been closed meanwhile, after the last drain of the writer
+        if (closed && queue.remove(event))
+            dropped.increment();
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full or the sink was closed
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    private void run() {
+        var batch = new ArrayList<Event>(MAX_BATCH_SIZE);
+        var builder = new StringBuilder();
+        try {
+            while (!closed) {
+                var first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                write(batch, builder);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the events offered before the sink was closed
+        while (queue.drainTo(batch, MAX_BATCH_SIZE) != 0) {
+            write(batch, builder);
+        }
+    }
+
+    private void write(ArrayList<Event> batch, StringBuilder builder) {
+        for (var event : batch) {
+            builder.append(event.level).append(' ').append(String.format(event.format, event.argument)).append('\n');
+        }
+        try {
+            appendable.append(builder);
+            if (appendable instanceof Flushable flushable)
+                flushable.flush();
+        } catch (IOException e) {
+            // the parsing threads can not be told, the events are lost
+            dropped.add(batch.size());
+        }
+        batch.clear();
+        builder.setLength(0);
+    }
+
+    /**
+     * Stop accepting events, and wait for the writer thread to write the pending ones.
+     * The events logged afterward are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.io.Serial;
+import java.util.Objects;
+
+/**
+ * The arguments are invalid : an unknown or ambiguous option, missing parameters, an unreadable argument file
+ */
+public final class CmdLineArgumentException extends IllegalArgumentException implements CmdLineError {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final ParseError error;
+
+    CmdLineArgumentException(ParseError error) {
+        super(null, error.cause().orElse(null));
+        this.error = Objects.requireNonNull(error);
+    }
+
+    @Override
+    public ParseError error() {
+        return error;
+    }
+
+    @Override
+    public String getMessage() {
+        return error.message();
+    }
+
+    /**
+     * The stack trace is not captured, see {@link CmdLineError}
+     */
+    @Override
+    public Throwable fillInStackTrace() {
+        return this;
+    }
+}
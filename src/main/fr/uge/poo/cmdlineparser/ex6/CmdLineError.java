@@ -0,0 +1,23 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+/**
+ * An exception thrown by the parser because of the command line, with the kind of the error.
+ * Errors in the arguments are {@link IllegalArgumentException}s, broken rules between the
+ * options are {@link IllegalStateException}s.
+ * <p>
+ * Invalid command lines are common, so these exceptions do not capture their stack trace,
+ * which would only show the parser, and their message is formatted when it is read.
+ */
+public sealed interface CmdLineError permits CmdLineArgumentException, CmdLineStateException {
+    /**
+     * @return the error of the command line
+     */
+    ParseError error();
+
+    /**
+     * @return the kind of the error
+     */
+    default ErrorCode code() {
+        return error().code();
+    }
+}
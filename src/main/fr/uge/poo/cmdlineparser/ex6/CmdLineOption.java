@@ -0,0 +1,45 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an option on a setter of a settings builder.
+ * <p>
+ * The annotation processor of the {@code processor} module generates, next to the builder,
+ * a class named after it with the suffix {@code Parser}, whose {@code process} method calls
+ * the annotated setters directly from a switch on the option names.
+ * <p>
+ * A setter with a single boolean parameter is a flag, it is called with true.
+ * Otherwise each parameter of the setter takes one argument of the command line, converted
+ * according to its type : String, int, long, double or boolean, and InetSocketAddress which
+ * takes two arguments, the hostname and the port.
+ * <p>
+ * The annotation is also read at runtime by {@link CmdLineParser#bind(Object)}, and on the
+ * components of a record by {@link OptionBinding#parse(Class, String[], java.util.function.Consumer)}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CmdLineOption {
+    /**
+     * @return the name of the option
+     */
+    String value();
+
+    /**
+     * @return the other names of the option
+     */
+    String[] aliases() default {};
+
+    /**
+     * @return true if the option has to be used
+     */
+    boolean required() default false;
+
+    /**
+     * @return the documentation of the option, shown by the usage
+     */
+    String doc() default "";
+}
@@ -1,81 +1,290 @@
 package fr.uge.poo.cmdlineparser.ex6;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 
 public class CmdLineParser {
     private final OptionsManager optionsManager = new OptionsManager();
-    private final LoggerObserver loggerObserver = new LoggerObserver();
     private final DocOptionsManagerObserver docOptionsManagerObserver = new DocOptionsManagerObserver();
-    private final ConflictOptionsManagerObserver conflictOptionsManagerObserver = new ConflictOptionsManagerObserver();
-    private final RequiredOptionsManagerObserver requiredOptionsManagerObserver = new RequiredOptionsManagerObserver();
+    private ArgFile.Mode argFileMode;
+    private boolean abbreviations;
+    private boolean gnuSyntax;
+    private int parseCacheSize;
+    private boolean allErrors;
+    private ParserMetrics metrics;
+    private volatile CompiledCmdLineParser compiled;
 
     private static boolean isOption(String arg) {
         return arg.startsWith("-");
     }
+    /**
+     * Create a parser which does not log anything
+     */
     public CmdLineParser() {
-        optionsManager.addObserver(loggerObserver);
-        optionsManager.addObserver(docOptionsManagerObserver);
-        optionsManager.addObserver(conflictOptionsManagerObserver);
-        optionsManager.addObserver(requiredOptionsManagerObserver);
+        this(LogSink.of(System.out), LogLevel.OFF);
     }
 
-    private static List<String> getParameters(Iterator<String> it, int nbParameters) {
-        var paramList = new ArrayList<String>();
-        for (int i = 0; i < nbParameters; i++) {
-            if (it.hasNext())
-                paramList.add(it.next());
-            else
-                throw new IllegalArgumentException("The number of parameters and number of parameters given should be equals");
-        }
-        return paramList;
+    /**
+     * Create a parser logging its events to the sink.
+     * With {@link LogLevel#OFF} no logger is installed at all, so logging costs nothing.
+     *
+     * @param sink where the events are written, see {@link AsyncLogSink} to not block the parsing threads
+     * @param level the minimum level of the events written
+     */
+    public CmdLineParser(LogSink sink, LogLevel level) {
+        Objects.requireNonNull(sink);
+        Objects.requireNonNull(level);
+        if (level != LogLevel.OFF)
+            optionsManager.addObserver(new LoggerObserver(sink, level));
+        optionsManager.addObserver(docOptionsManagerObserver);
     }
 
+    /**
+     * Process the arguments with the registered options.
+     * Each call works on its own {@link ParseSession}, so once the options are registered
+     * the parser can be shared and called by several threads at the same time.
+     *
+     * @param arguments
+     * @return the arguments which are not options
+     */
     public List<String> process(String[] arguments) {
         Objects.requireNonNull(arguments);
-        ArrayList<String> files = new ArrayList<>();
-        var it = List.of(arguments).iterator();
-        while (it.hasNext()) {
-            var arg = it.next();
-            if (!isOption(arg)) {
-                files.add(arg);
-                continue;
+        return compile().process(arguments);
+    }
+
+    /**
+     * Process the arguments without throwing if they are invalid, see {@link CompiledCmdLineParser#tryProcess(String[])}
+     *
+     * @param arguments
+     * @return the arguments which are not options, or why the arguments were rejected
+     */
+    public ParseResult tryProcess(String[] arguments) {
+        Objects.requireNonNull(arguments);
+        return compile().tryProcess(arguments);
+    }
+
+    /**
+     * Validate the arguments without running any action, see {@link CompiledCmdLineParser#parse(String[])}
+     *
+     * @param arguments
+     * @return the validated command line
+     */
+    public ParsedCommandLine parse(String[] arguments) {
+        Objects.requireNonNull(arguments);
+        return compile().parse(arguments);
+    }
+
+    /**
+     * Run the actions of a validated command line, see {@link CompiledCmdLineParser#apply(ParsedCommandLine)}.
+     * The command line must have been parsed since the last registration.
+     *
+     * @param line
+     * @return the arguments which are not options
+     */
+    public List<String> apply(ParsedCommandLine line) {
+        Objects.requireNonNull(line);
+        return compile().apply(line);
+    }
+
+    /**
+     * Process the arguments lazily, see {@link CompiledCmdLineParser#process(Iterator, Consumer)}
+     *
+     * @param arguments consumed one token at a time
+     * @param argumentConsumer receives the arguments which are not options, in order
+     */
+    public void process(Iterator<String> arguments, Consumer<? super String> argumentConsumer) {
+        Objects.requireNonNull(arguments);
+        Objects.requireNonNull(argumentConsumer);
+        compile().process(arguments, argumentConsumer);
+    }
+
+    /**
+     * Process the arguments lazily, see {@link CompiledCmdLineParser#process(Stream, Consumer)}
+     *
+     * @param arguments consumed one token at a time, the stream is not closed
+     * @param argumentConsumer receives the arguments which are not options, in order
+     */
+    public void process(Stream<String> arguments, Consumer<? super String> argumentConsumer) {
+        Objects.requireNonNull(arguments);
+        Objects.requireNonNull(argumentConsumer);
+        compile().process(arguments, argumentConsumer);
+    }
+
+    /**
+     * Process the command lines in parallel, see {@link CompiledCmdLineParser#processAll(List)}
+     *
+     * @param commandLines
+     * @return the outcome of each command line, in the same order
+     */
+    public List<CompiledCmdLineParser.Outcome> processAll(List<String[]> commandLines) {
+        Objects.requireNonNull(commandLines);
+        return compile().processAll(commandLines);
+    }
+
+    /**
+     * Freeze the options registered so far into an immutable parser.
+     * The result is kept until a new option is registered, so calling this method
+     * again without registering anything is free.
+     *
+     * @return the compiled parser
+     */
+    public CompiledCmdLineParser compile() {
+        var compiled = this.compiled;
+        if (compiled == null) {
+            // the first calls may race, they must all share one parser, so one parse cache and its statistics
+            synchronized (optionsManager) {
+                compiled = this.compiled;
+                if (compiled == null) {
+                    compiled = optionsManager.compile(argFileMode, abbreviations, gnuSyntax, parseCacheSize, allErrors, metrics);
+                    this.compiled = compiled;
+                }
             }
-            processTokenOpt(arg, it);
         }
-        optionsManager.finishProcess();
-        return files;
+        return compiled;
+    }
+
+    /**
+     * Expand the arguments {@code @path} with the content of the file, see {@link ArgFile}
+     *
+     * @param mode how the files are split into arguments
+     */
+    public void enableArgFiles(ArgFile.Mode mode) {
+        Objects.requireNonNull(mode);
+        compiled = null;
+        argFileMode = mode;
+    }
+
+    /**
+     * Accept the unambiguous prefixes of the names of the options, {@code -win} for {@code -window-name}
+     * if no other option starts with {@code -win}. A prefix shared by several options is rejected
+     * with the list of the candidates. The names are then looked up in a trie, see {@link OptionTrie}.
+     */
+    public void enableAbbreviations() {
+        compiled = null;
+        abbreviations = true;
+    }
+
+    /**
+     * Accept the POSIX and GNU syntax on top of the names of the options :
+     * <ul>
+     *     <li>{@code -abc} is the cluster of the flags {@code -a}, {@code -b} and {@code -c},</li>
+     *     <li>{@code -w4} gives 4 as first parameter to the option {@code -w}, it also ends a cluster,</li>
+     *     <li>{@code --border-width=4} gives 4 as first parameter to the option {@code --border-width},</li>
+     *     <li>{@code --} ends the options, the arguments after it are never options,</li>
+     *     <li>{@code -} alone is an argument, usually standing for the standard input.</li>
+     * </ul>
+     * A token which is the name of an option, like {@code -window-name}, is never read as a cluster.
+     * The names and the values are read as ranges of the token, the token is never split into strings.
+     */
+    public void enableGnuSyntax() {
+        compiled = null;
+        gnuSyntax = true;
+    }
+
+    /**
+     * Keep the last validated command lines, so processing the same arguments again only runs
+     * the actions, without looking up nor checking the options, see {@link ParsedCommandLine}.
+     * The options are then checked before any action runs, as with {@link #parse(String[])}.
+     * The least recently used command line is evicted when the cache is full, a registration empties it.
+     *
+     * @param maxSize maximum number of command lines kept
+     */
+    public void enableParseCache(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("The size of the cache should be positive");
+        compiled = null;
+        parseCacheSize = maxSize;
+    }
+
+    /**
+     * Report all the errors of a command line instead of the first one : the validation goes on
+     * after an unknown option, a missing parameter or a conflict, and all the rules are checked at the end.
+     * The command lines are then validated before any action runs, as with {@link #parse(String[])}.
+     * {@link #tryProcess(String[])} returns all the errors, each with its token and the options involved,
+     * {@link #process(String[])} throws the exception of the first one, which suppresses the others.
+     * The lazy processes of an {@link Iterator} or a {@link Stream} still stop at the first error.
+     */
+    public void enableAllErrors() {
+        compiled = null;
+        allErrors = true;
+    }
+
+    /**
+     * @return the counters of the parse cache, empty if it is not enabled
+     */
+    public Optional<CompiledCmdLineParser.CacheStats> cacheStats() {
+        return compile().cacheStats();
     }
 
-    private void processTokenOpt(String name, Iterator<String> it) {
-        var opt = optionsManager.processOption(name).orElseThrow(() -> new IllegalArgumentException("'" + name + "' is not an option"));
-        var params = getParameters(it, opt.nbParameters);
-        try {
-            opt.action.accept(params);
-        } catch (Exception e) {
-            throw new IllegalStateException("Error while applying option on parameters");
+    /**
+     * Count the uses of each option, the calls to process with their duration and the failures
+     * by {@link ErrorCode}. The counters are kept across registrations, enabling them again does nothing.
+     * See {@link ParserMetrics#registerMBean(String)} and {@link MetricsHttpServer} to publish them.
+     *
+     * @return the counters of this parser
+     */
+    public ParserMetrics enableMetrics() {
+        if (metrics == null) {
+            var metrics = new ParserMetrics();
+            for (var option : optionsManager.options) {
+                metrics.register(option.name);
+            }
+            compiled = null;
+            optionsManager.addObserver(new MetricsObserver(metrics));
+            this.metrics = metrics;
         }
+        return metrics;
+    }
+
+    /**
+     * @return the counters of this parser, empty if they are not enabled
+     */
+    public Optional<ParserMetrics> metrics() {
+        return Optional.ofNullable(metrics);
+    }
+
+    private void register(Option option) {
+        compiled = null;
+        optionsManager.register(option);
     }
 
     public void addOption(Option opt) {
         Objects.requireNonNull(opt);
-        if (optionsManager.processOption(opt.name).isPresent())
+        if (optionsManager.lookupOption(opt.name).isPresent())
             throw new IllegalStateException("The map already contains this option");
-        optionsManager.register(opt);
+        register(opt);
+    }
+
+    /**
+     * Register an option for each setter of the target annotated with {@link CmdLineOption},
+     * the setters are resolved once per class, see {@link OptionBinding}
+     *
+     * @param target the builder receiving the values of the options
+     * @throws IllegalArgumentException if the class of the target does not declare valid options
+     */
+    public void bind(Object target) {
+        Objects.requireNonNull(target);
+        OptionBinding.options(target).forEach(this::addOption);
     }
 
     public void addFlag(String name, Runnable action) {
         Objects.requireNonNull(name);
         Objects.requireNonNull(action);
-        optionsManager.register(new Option(name, 0, arg -> action.run()));
+        register(new Option(name, 0, arg -> action.run()));
     }
 
     public void addOptionWithOneParameter(String name, Consumer<List<String>> action) {
         Objects.requireNonNull(name);
         Objects.requireNonNull(action);
-        optionsManager.register(new Option(name, 0, action));
+        register(new Option(name, 0, action));
     }
 
 
@@ -84,97 +293,229 @@ public class CmdLineParser {
         Objects.requireNonNull(action);
         if (nbParameters < 0)
             throw new IllegalArgumentException("The number of parameters should be greater than or equals to 0");
-        optionsManager.register(new Option(name, nbParameters, action::accept));
+        register(new Option(name, nbParameters, action::accept));
     }
 
+    /**
+     * At the end of each process, exactly one of the options should have been used
+     *
+     * @param names names or aliases of registered options
+     */
+    public void requireExactlyOneOf(String... names) {
+        addGroup(Constraints.GroupKind.EXACTLY_ONE, names);
+    }
+
+    /**
+     * At the end of each process, at least one of the options should have been used
+     *
+     * @param names names or aliases of registered options
+     */
+    public void requireAtLeastOneOf(String... names) {
+        addGroup(Constraints.GroupKind.AT_LEAST_ONE, names);
+    }
+
+    private void addGroup(Constraints.GroupKind kind, String... names) {
+        Objects.requireNonNull(names);
+        if (names.length == 0)
+            throw new IllegalArgumentException("A group needs at least one option");
+        var group = new Constraints.Group(kind, List.of(names));
+        compiled = null;
+        optionsManager.addGroup(group);
+    }
+
+    /**
+     * Print the options and their documentation on the standard output, in one write
+     */
     public void usage() {
-        if (optionsManager.byName.isEmpty()) {
-            System.out.println("No options have been registered yet");
-            return;
-        }
-        var listName = new ArrayList<>(optionsManager.byName.values().stream().map(opt -> opt.name).distinct().toList());
-        Collections.sort(listName);
-        System.out.println("List of the options registered :");
-        for (var name : listName) {
-            var opt = optionsManager.processOption(name).orElseThrow(IllegalArgumentException::new);
-            System.out.print(" " + name);
-            if (opt.doc != null)
-                System.out.print(", \"" + opt.doc + "\"");
-            System.out.print("\n");
-        }
+        System.out.print(usageText());
+    }
+
+    /**
+     * Append the options and their documentation, in one call
+     *
+     * @param out a {@link StringBuilder}, a {@link java.io.Writer}, ...
+     * @throws IOException if out fails
+     */
+    public void usage(Appendable out) throws IOException {
+        Objects.requireNonNull(out);
+        out.append(usageText());
+    }
+
+    /**
+     * Write the options and their documentation encoded in UTF-8, in one call
+     *
+     * @param out
+     * @throws IOException if out fails
+     */
+    public void writeUsage(OutputStream out) throws IOException {
+        Objects.requireNonNull(out);
+        out.write(docOptionsManagerObserver.usageBytes());
+    }
+
+    /**
+     * The text is rendered once and kept until the next registration
+     *
+     * @return the options, sorted by name, and their documentation
+     */
+    public String usageText() {
+        return docOptionsManagerObserver.usage();
+    }
+
+    @FunctionalInterface
+    public interface IntBiConsumer {
+        void accept(int first, int second);
+    }
+
+    @FunctionalInterface
+    public interface LongBiConsumer {
+        void accept(long first, long second);
+    }
+
+    @FunctionalInterface
+    public interface BooleanConsumer {
+        void accept(boolean value);
     }
 
     interface OptionsManagerObserver {
+        int REGISTERED = 1;
+        int PROCESSED = 1 << 1;
+        int FINISHED = 1 << 2;
+
+        /**
+         * The events this observer wants to receive, read once when the observer is added.
+         * The other methods are never called.
+         *
+         * @return a combination of {@link #REGISTERED}, {@link #PROCESSED} and {@link #FINISHED}
+         */
+        default int subscriptions() {
+            return REGISTERED | PROCESSED | FINISHED;
+        }
 
         void onRegisteredOption(OptionsManager optionsManager, Option option);
 
-        void onProcessedOption(OptionsManager optionsManager, Option option);
+        void onProcessedOption(OptionsManager optionsManager, ParseSession session, Option option);
 
-        void onFinishedProcess(OptionsManager optionsManager);
+        void onFinishedProcess(OptionsManager optionsManager, ParseSession session);
     }
 
-    private static class OptionsManager {
+    static class OptionsManager {
 
         private final HashMap<String, Option> byName = new HashMap<>();
-        private final Set<OptionsManagerObserver> observers = new HashSet<>();
+        private final ArrayList<Option> options = new ArrayList<>();
+        private final ArrayList<Constraints.Group> groups = new ArrayList<>();
+        private final ArrayList<OptionsManagerObserver> observers = new ArrayList<>();
+        private OptionsManagerObserver[] registeredObservers = new OptionsManagerObserver[0];
 
         /**
-         * Register the option with all its possible names
+         * Register the option with all its possible names,
+         * the observers are signaled once for the option whatever its number of aliases
          *
          * @param option
          */
         void register(Option option) {
-            register(option.name, option);
+            checkNotRegistered(option.name);
+            for (var alias : option.aliases) {
+                checkNotRegistered(alias);
+            }
+            byName.put(option.name, option);
             for (var alias : option.aliases) {
-                register(alias, option);
+                byName.put(alias, option);
+            }
+            options.add(option);
+            for (var observer : registeredObservers) {
+                observer.onRegisteredOption(this, option);
             }
         }
 
-
-        private void register(String name, Option option) {
+        private void checkNotRegistered(String name) {
             if (byName.containsKey(name))
                 throw new IllegalStateException("Option " + name + " is already registered.");
-            observers.forEach(o -> o.onRegisteredOption(this, option));
-            byName.put(name, option);
         }
 
         /**
-         * This method is called to signal that an option is encountered during
-         * a command line process
+         * Find an option by one of its names, without signaling anything to the observers
          *
          * @param optionName
          * @return the corresponding object option if it exists
          */
-        Optional<Option> processOption(String optionName) {
+        Optional<Option> lookupOption(String optionName) {
             Objects.requireNonNull(optionName);
-            var option = byName.get(optionName);
-            if (option != null)
-                observers.forEach(o -> o.onProcessedOption(this, option));
-            return Optional.ofNullable(option);
+            return Optional.ofNullable(byName.get(optionName));
+        }
+
+        void addGroup(Constraints.Group group) {
+            Objects.requireNonNull(group);
+            groups.add(group);
         }
 
         /**
-         * This method is called to signal the method process of the CmdLineParser is finished
+         * Freeze the registered options. Each option gets its registration index as ordinal,
+         * the compiled parser checks the constraints, signals the processed options and the end
+         * of each process to the observers, and marks the options as seen in the session.
+         *
+         * @param argFileMode how the argument files are read, or null if they are not expanded
+         * @param abbreviations true if the unambiguous prefixes of the names are accepted
+         * @param gnuSyntax true if the short options can be clustered and the values attached
+         * @param parseCacheSize maximum number of validated command lines kept, 0 if they are not kept
+         * @param allErrors true if all the errors of a command line are reported
+         * @param metrics where the calls to process are counted, or null
+         * @return the compiled parser
          */
-        void finishProcess() {
-            observers.forEach(o -> o.onFinishedProcess(this));
+        CompiledCmdLineParser compile(ArgFile.Mode argFileMode, boolean abbreviations, boolean gnuSyntax, int parseCacheSize, boolean allErrors,
+                                      ParserMetrics metrics) {
+            var ordinals = new IdentityHashMap<Option, Integer>();
+            for (int i = 0; i < options.size(); i++) {
+                ordinals.put(options.get(i), i);
+            }
+            var entries = new HashMap<String, CompiledCmdLineParser.Entry>();
+            var ordinalsByName = new HashMap<String, Integer>();
+            byName.forEach((name, option) -> {
+                var ordinal = ordinals.get(option);
+                entries.put(name, new CompiledCmdLineParser.Entry(option, ordinal));
+                ordinalsByName.put(name, ordinal);
+            });
+            var shortOptions = gnuSyntax ? new CompiledCmdLineParser.Entry[CompiledCmdLineParser.MAX_SHORT_NAME] : null;
+            if (gnuSyntax) {
+                entries.forEach((name, entry) -> {
+                    if (name.length() == 2 && name.charAt(0) == '-' && name.charAt(1) != '-' && name.charAt(1) < CompiledCmdLineParser.MAX_SHORT_NAME)
+                        shortOptions[name.charAt(1)] = entry;
+                });
+            }
+            return new CompiledCmdLineParser(this, OptionTable.of(entries), abbreviations ? OptionTrie.of(entries) : null, shortOptions, options.size(),
+                    Constraints.of(options, ordinalsByName, groups), argFileMode, parseCacheSize, allErrors, metrics,
+                    observersOf(OptionsManagerObserver.PROCESSED), observersOf(OptionsManagerObserver.FINISHED));
         }
 
+        /**
+         * Observers are called in the order they were added
+         *
+         * @param observer
+         */
         void addObserver(OptionsManagerObserver observer) {
             Objects.requireNonNull(observer);
+            if (observers.contains(observer))
+                return;
             observers.add(observer);
+            registeredObservers = observersOf(OptionsManagerObserver.REGISTERED);
+        }
+
+        private OptionsManagerObserver[] observersOf(int event) {
+            return observers.stream()
+                    .filter(observer -> (observer.subscriptions() & event) != 0)
+                    .toArray(OptionsManagerObserver[]::new);
         }
     }
 
     static public class Option {
 
-        private final String name;
-        private final int nbParameters;
-        private final Consumer<List<String>> action;
-        public Set<String> conflicts = new HashSet<>();
-        private boolean isRequired;
-        private String doc;
-        private Set<String> aliases = new HashSet<>();
+        final String name;
+        final int nbParameters;
+        final Action action;
+        public final Set<String> conflicts;
+        final Set<String> requires;
+        final boolean isRequired;
+        private final String doc;
+        final Set<String> aliases;
 
         private Option(OptionsBuilder optionsBuilder) {
             this.name = optionsBuilder.name;
@@ -182,10 +523,16 @@ public class CmdLineParser {
             this.action = optionsBuilder.action;
             this.isRequired = optionsBuilder.isRequired;
             this.doc = optionsBuilder.doc;
-            this.aliases = optionsBuilder.aliases;
-            this.conflicts = optionsBuilder.conflicts;
+            this.aliases = Set.copyOf(optionsBuilder.aliases);
+            this.conflicts = Set.copyOf(optionsBuilder.conflicts);
+            this.requires = Set.copyOf(optionsBuilder.requires);
         }
 
+        /**
+         * @param name
+         * @param nbParameters
+         * @param action receives the parameters as a read-only view, only valid during the call
+         */
         public Option(String name, int nbParameters, Consumer<List<String>> action) {
             Objects.requireNonNull(name);
             Objects.requireNonNull(action);
@@ -193,7 +540,12 @@ public class CmdLineParser {
                 throw new IllegalStateException("nbParameters must be higher than 0");
             this.name = name;
             this.nbParameters = nbParameters;
-            this.action = action;
+            this.action = action::accept;
+            this.isRequired = false;
+            this.doc = null;
+            this.aliases = Set.of();
+            this.conflicts = Set.of();
+            this.requires = Set.of();
         }
 
         @Override
@@ -201,10 +553,20 @@ public class CmdLineParser {
             return "\"" + name + "\"";
         }
 
+        /**
+         * What the parser calls with the parameters of the option. The typed actions
+         * of {@link OptionsBuilder} read them without copying nor boxing them.
+         */
+        @FunctionalInterface
+        interface Action {
+            void accept(ParameterSlice parameters);
+        }
+
         public static class OptionsBuilder {
             private final HashSet<String> aliases = new HashSet<>();
             public Set<String> conflicts = new HashSet<>();
-            private Consumer<List<String>> action;
+            private final HashSet<String> requires = new HashSet<>();
+            private Action action;
             private String name;
             private int nbParameters;
             private boolean isRequired;
@@ -217,7 +579,7 @@ public class CmdLineParser {
                     throw new IllegalStateException("nbParameters must be higher than 0");
                 this.name = name;
                 this.nbParameters = nbParameters;
-                this.action = action;
+                this.action = action::accept;
             }
 
             public OptionsBuilder(String name, int nbParameters) {
@@ -243,34 +605,116 @@ public class CmdLineParser {
 
             public OptionsBuilder setConsumer(Consumer<List<String>> action) {
                 Objects.requireNonNull(action);
-                this.action = action;
+                this.action = action::accept;
                 return this;
             }
 
+            /**
+             * The first parameter is parsed as an int, without boxing
+             *
+             * @param action
+             * @return this builder
+             */
             public OptionsBuilder setIntConsumer(IntConsumer action) {
                 Objects.requireNonNull(action);
-                this.action = acc -> action.accept(Integer.parseInt(acc.get(0)));
+                this.action = params -> action.accept(params.intAt(0));
+                return this;
+            }
+
+            /**
+             * The first parameter is parsed as a long, without boxing
+             *
+             * @param action
+             * @return this builder
+             */
+            public OptionsBuilder setLongConsumer(LongConsumer action) {
+                Objects.requireNonNull(action);
+                this.action = params -> action.accept(params.longAt(0));
                 return this;
             }
 
+            /**
+             * The first parameter is parsed as a double, without boxing
+             *
+             * @param action
+             * @return this builder
+             */
+            public OptionsBuilder setDoubleConsumer(DoubleConsumer action) {
+                Objects.requireNonNull(action);
+                this.action = params -> action.accept(params.doubleAt(0));
+                return this;
+            }
+
+            /**
+             * The first parameter is parsed as a boolean, "true" or "false" ignoring case
+             *
+             * @param action
+             * @return this builder
+             */
+            public OptionsBuilder setBooleanConsumer(BooleanConsumer action) {
+                Objects.requireNonNull(action);
+                this.action = params -> action.accept(params.booleanAt(0));
+                return this;
+            }
+
+            /**
+             * The first two parameters are parsed as ints, without boxing
+             *
+             * @param action
+             * @return this builder
+             */
+            public OptionsBuilder setIntBiConsumer(IntBiConsumer action) {
+                Objects.requireNonNull(action);
+                this.action = params -> action.accept(params.intAt(0), params.intAt(1));
+                return this;
+            }
+
+            /**
+             * The first two parameters are parsed as longs, without boxing
+             *
+             * @param action
+             * @return this builder
+             */
+            public OptionsBuilder setLongBiConsumer(LongBiConsumer action) {
+                Objects.requireNonNull(action);
+                this.action = params -> action.accept(params.longAt(0), params.longAt(1));
+                return this;
+            }
+
+            /**
+             * Prefer {@link #setIntBiConsumer(IntBiConsumer)} which does not box the values
+             *
+             * @param action
+             * @return this builder
+             */
             public OptionsBuilder setBiConsumerIntegerToInteger(BiConsumer<Integer, Integer> action) {
                 Objects.requireNonNull(action);
-                this.action = acc -> action.accept(Integer.parseInt(acc.get(0)), Integer.parseInt(acc.get(1)));
+                this.action = params -> action.accept(params.intAt(0), params.intAt(1));
                 return this;
             }
 
             public OptionsBuilder setBiConsumerInetSocketAddress(BiConsumer<String, Integer> action) {
                 Objects.requireNonNull(action);
-                this.action = acc -> action.accept(acc.get(0), Integer.parseInt(acc.get(1)));
+                this.action = params -> action.accept(params.get(0), params.intAt(1));
                 return this;
             }
 
-            public OptionsBuilder setAction(Consumer<List<String>> action) {
+            /**
+             * @param action reads the parameters from the slice
+             * @return this builder
+             */
+            OptionsBuilder setSliceAction(Action action) {
                 Objects.requireNonNull(action);
                 this.action = action;
                 return this;
             }
 
+            public OptionsBuilder setAction(Consumer<List<String>> action) {
+                Objects.requireNonNull(action);
+                this.action = action::accept;
+                return this;
+            }
+
             public OptionsBuilder isRequired() {
                 isRequired = true;
                 return this;
@@ -298,127 +742,153 @@ public class CmdLineParser {
                     conflicts.add(opt);
                 return this;
             }
-        }
-    }
-
-    class RequiredOptionsManagerObserver implements OptionsManagerObserver {
-        private final Set<String> missingRequiredOptions = new HashSet<>();
 
-        @Override
-        public void onRegisteredOption(OptionsManager optionsManager, Option option) {
-            Objects.requireNonNull(optionsManager);
-            Objects.requireNonNull(option);
-            if(option.isRequired) {
-                missingRequiredOptions.add(option.name);
-                missingRequiredOptions.addAll(option.aliases);
+            /**
+             * When this option is used, the other one should be used too in the same process
+             *
+             * @param opt name or alias of the other option
+             * @return this builder
+             */
+            public OptionsBuilder requires(String opt) {
+                Objects.requireNonNull(opt);
+                if(isOption(opt))
+                    requires.add(opt);
+                return this;
             }
         }
+    }
 
-        @Override
-        public void onProcessedOption(OptionsManager optionsManager, Option option) {
-            Objects.requireNonNull(optionsManager);
-            Objects.requireNonNull(option);
-            if(option.isRequired) {
-                missingRequiredOptions.remove(option.name);
-                missingRequiredOptions.removeAll(option.aliases);
-            }
+    /**
+     * Keeps the documentation of the options and renders the usage text when it is first asked for
+     * after a registration
+     */
+    static class DocOptionsManagerObserver implements OptionsManagerObserver {
+        private final TreeMap<String, String> options = new TreeMap<>();
+        private volatile Usage usage;
+
+        private record Usage(String text, byte[] bytes) {
         }
 
         @Override
-        public void onFinishedProcess(OptionsManager optionsManager) {
-            Objects.requireNonNull(optionsManager);
-            if(missingRequiredOptions.size() != 0)
-                throw new IllegalStateException("A required option has not been used");
+        public int subscriptions() {
+            return REGISTERED;
         }
-    }
-
-    class DocOptionsManagerObserver implements OptionsManagerObserver {
-        private final Map<String, String> options = new HashMap<>();
 
         @Override
         public void onRegisteredOption(OptionsManager optionsManager, Option option) {
             Objects.requireNonNull(option);
             Objects.requireNonNull(optionsManager);
             options.put(option.name, option.doc);
+            usage = null;
         }
 
         @Override
-        public void onProcessedOption(OptionsManager optionsManager, Option option) {
+        public void onProcessedOption(OptionsManager optionsManager, ParseSession session, Option option) {
             // Nothing
         }
 
         @Override
-        public void onFinishedProcess(OptionsManager optionsManager) {
+        public void onFinishedProcess(OptionsManager optionsManager, ParseSession session) {
             // Nothing
         }
 
-        void usage() {
-            options.keySet().stream().sorted().forEach(option -> {
-                var doc = options.get(option);
-                if(doc != null)
-                    System.out.println(option + " " + doc);
-                else
-                    System.out.println(option);
-            });
+        private Usage render() {
+            var usage = this.usage;
+            if (usage == null) {
+                var text = new StringBuilder();
+                if (options.isEmpty()) {
+                    text.append("No options have been registered yet\n");
+                } else {
+                    text.append("List of the options registered :\n");
+                    options.forEach((name, doc) -> {
+                        text.append(' ').append(name);
+                        if (doc != null)
+                            text.append(", \"").append(doc).append('"');
+                        text.append('\n');
+                    });
+                }
+                var string = text.toString();
+                usage = new Usage(string, string.getBytes(StandardCharsets.UTF_8));
+                this.usage = usage;
+            }
+            return usage;
+        }
+
+        String usage() {
+            return render().text;
+        }
+
+        /**
+         * @return the usage encoded in UTF-8, must not be modified
+         */
+        byte[] usageBytes() {
+            return render().bytes;
         }
     }
 
-    class ConflictOptionsManagerObserver implements OptionsManagerObserver {
-        private final Map<String, List<String>> conflicts = new HashMap<>();
-        private final Set<String> seenOptions = new HashSet<>();
+    /**
+     * Counts the options processed in the {@link ParserMetrics}
+     */
+    static class MetricsObserver implements OptionsManagerObserver {
+        private final ParserMetrics metrics;
+
+        MetricsObserver(ParserMetrics metrics) {
+            this.metrics = Objects.requireNonNull(metrics);
+        }
+
+        @Override
+        public int subscriptions() {
+            return REGISTERED | PROCESSED;
+        }
 
         @Override
         public void onRegisteredOption(OptionsManager optionsManager, Option option) {
-            Objects.requireNonNull(optionsManager);
-            Objects.requireNonNull(option);
-            var blackList = new ArrayList<>(option.conflicts);
-            conflicts.put(option.name, blackList);
-            option.aliases.forEach(a -> conflicts.put(a, blackList));
+            metrics.register(option.name);
         }
 
         @Override
-        public void onProcessedOption(OptionsManager optionsManager, Option option) {
-            Objects.requireNonNull(optionsManager);
-            Objects.requireNonNull(option);
-            var conflictWith = conflicts.get(option.name);
-            conflictWith.stream()
-                    .filter(seenOptions::contains)
-                    .findAny()
-                    .ifPresent(opt -> {
-                        throw new IllegalStateException("Option " + opt + " is in conflict with previously seen options");
-                    });
-            seenOptions.add(option.name);
-            seenOptions.addAll(option.aliases);
+        public void onProcessedOption(OptionsManager optionsManager, ParseSession session, Option option) {
+            metrics.recordOption(option.name);
         }
 
         @Override
-        public void onFinishedProcess(OptionsManager optionsManager) {
-            Objects.requireNonNull(optionsManager);
-            for(var seen:seenOptions) {
-                var inConflictWith = conflicts.get(seen);
-                for(var name : inConflictWith) {
-                    if(seenOptions.contains(name))
-                        throw new IllegalStateException(seen+" is processed with "+name);
-                }
-            }
+        public void onFinishedProcess(OptionsManager optionsManager, ParseSession session) {
+            // Nothing
         }
     }
 
-    class LoggerObserver implements OptionsManagerObserver {
+    static class LoggerObserver implements OptionsManagerObserver {
+        private final LogSink sink;
+        private final boolean logRegistered;
+        private final boolean logProcessed;
+
+        LoggerObserver(LogSink sink, LogLevel level) {
+            this.sink = Objects.requireNonNull(sink);
+            this.logRegistered = LogLevel.INFO.isEnabled(level);
+            this.logProcessed = LogLevel.DEBUG.isEnabled(level);
+        }
+
+        @Override
+        public int subscriptions() {
+            return (logRegistered ? REGISTERED : 0) | (logProcessed ? PROCESSED | FINISHED : 0);
+        }
 
         @Override
         public void onRegisteredOption(OptionsManager optionsManager, Option option) {
-            System.out.println("Option " + option + " is registered");
+            if (logRegistered)
+                sink.log(LogLevel.INFO, "Option %s is registered", option);
         }
 
         @Override
-        public void onProcessedOption(OptionsManager optionsManager, Option option) {
-            System.out.println("Option " + option + " is processed");
+        public void onProcessedOption(OptionsManager optionsManager, ParseSession session, Option option) {
+            if (logProcessed)
+                sink.log(LogLevel.DEBUG, "Option %s is processed", option);
         }
 
         @Override
-        public void onFinishedProcess(OptionsManager optionsManager) {
-            System.out.println("Process method is finished");
+        public void onFinishedProcess(OptionsManager optionsManager, ParseSession session) {
+            if (logProcessed)
+                sink.log(LogLevel.DEBUG, "Process method is finished", null);
         }
     }
 }
\ No newline at end of file
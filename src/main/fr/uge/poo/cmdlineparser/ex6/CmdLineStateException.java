@@ -0,0 +1,37 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.io.Serial;
+import java.util.Objects;
+
+/**
+ * The options break a rule (conflict, required option, group) or an action failed
+ */
+public final class CmdLineStateException extends IllegalStateException implements CmdLineError {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final ParseError error;
+
+    CmdLineStateException(ParseError error) {
+        super(null, error.cause().orElse(null));
+        this.error = Objects.requireNonNull(error);
+    }
+
+    @Override
+    public ParseError error() {
+        return error;
+    }
+
+    @Override
+    public String getMessage() {
+        return error.message();
+    }
+
+    /**
+     * The stack trace is not captured, see {@link CmdLineError}
+     */
+    @Override
+    public Throwable fillInStackTrace() {
+        return this;
+    }
+}
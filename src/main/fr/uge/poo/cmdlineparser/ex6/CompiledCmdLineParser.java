@@ -0,0 +1,800 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import fr.uge.poo.cmdlineparser.ex6.CmdLineParser.Option;
+import fr.uge.poo.cmdlineparser.ex6.CmdLineParser.OptionsManager;
+import fr.uge.poo.cmdlineparser.ex6.CmdLineParser.OptionsManagerObserver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The options of a {@link CmdLineParser} frozen by {@link CmdLineParser#compile()}.
+ * Registering new options on the parser does not change an already compiled parser,
+ * which is immutable and can be shared between threads.
+ */
+public final class CompiledCmdLineParser {
+    /**
+     * The short options which can be clustered are the ones named '-' followed by an ASCII character
+     */
+    static final int MAX_SHORT_NAME = 128;
+
+    private final OptionsManager optionsManager;
+    private final OptionTable<Entry> optionTable;
+    private final OptionTrie<Entry> prefixTrie;
+    private final Entry[] shortOptions;
+    private final Option[] options;
+    private final ParseCache parseCache;
+    private final int nbOptions;
+    private final int maxNbParameters;
+    private final ArgFile.Mode argFileMode;
+    private final boolean allErrors;
+    private final Constraints constraints;
+    private final ParserMetrics metrics;
+    private final OptionsManagerObserver[] processedObservers;
+    private final OptionsManagerObserver[] finishedObservers;
+
+    /**
+     * An option with its ordinal, what the option table returns for each name and alias
+     *
+     * @param option
+     * @param ordinal index of the option in the bitsets of the constraints
+     */
+    record Entry(Option option, int ordinal) {
+    }
+
+    /**
+     * The counters of the parse cache, see {@link CmdLineParser#enableParseCache(int)}
+     *
+     * @param hits number of command lines found in the cache
+     * @param misses number of command lines parsed because they were not in the cache
+     * @param evictions number of command lines removed because the cache was full
+     * @param size number of command lines in the cache
+     */
+    public record CacheStats(long hits, long misses, long evictions, int size) {
+    }
+
+    /**
+     * What happened to one command line of a batch
+     *
+     * @param arguments the arguments which are not options, or null if the command line was rejected
+     * @param error why the command line was rejected, or null if it was accepted
+     */
+    public record Outcome(List<String> arguments, RuntimeException error) {
+        public Outcome {
+            if ((arguments == null) == (error == null))
+                throw new IllegalArgumentException("Either the arguments or the error should be given");
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * @param optionsManager given to the observers
+     * @param optionTable the options by name and alias
+     * @param prefixTrie the options by name, alias and unambiguous prefix, or null if the abbreviations are not enabled
+     * @param shortOptions the options named '-' and a character, by character, or null if the GNU syntax is not enabled
+     * @param nbOptions number of canonical options
+     * @param constraints the rules between the options
+     * @param argFileMode how the argument files are read, or null if they are not expanded
+     * @param parseCacheSize maximum number of validated command lines kept, 0 if they are not kept
+     * @param allErrors true if the command lines are validated entirely before being processed, to report all their errors
+     * @param metrics where the calls to process are counted, or null
+     * @param processedObservers the observers subscribed to the processed options, in order
+     * @param finishedObservers the observers subscribed to the end of process, in order
+     */
+    CompiledCmdLineParser(OptionsManager optionsManager, OptionTable<Entry> optionTable, OptionTrie<Entry> prefixTrie, Entry[] shortOptions, int nbOptions, Constraints constraints,
+                          ArgFile.Mode argFileMode, int parseCacheSize, boolean allErrors, ParserMetrics metrics,
+                          OptionsManagerObserver[] processedObservers, OptionsManagerObserver[] finishedObservers) {
+        this.optionsManager = Objects.requireNonNull(optionsManager);
+        this.optionTable = Objects.requireNonNull(optionTable);
+        this.prefixTrie = prefixTrie;
+        this.shortOptions = shortOptions == null ? null : shortOptions.clone();
+        this.nbOptions = nbOptions;
+        this.maxNbParameters = optionTable.values().stream().mapToInt(entry -> entry.option.nbParameters).max().orElse(0);
+        this.options = new Option[nbOptions];
+        for (var entry : optionTable.values()) {
+            options[entry.ordinal] = entry.option;
+        }
+        this.constraints = Objects.requireNonNull(constraints);
+        this.argFileMode = argFileMode;
+        this.parseCache = parseCacheSize == 0 ? null : new ParseCache(parseCacheSize);
+        this.allErrors = allErrors;
+        this.metrics = metrics;
+        this.processedObservers = processedObservers.clone();
+        this.finishedObservers = finishedObservers.clone();
+    }
+
+    private static boolean isOption(CharSequence arg) {
+        return !arg.isEmpty() && arg.charAt(0) == '-';
+    }
+
+    /**
+     * Process the arguments with the compiled options, see {@link CmdLineParser#process(String[])}.
+     * The array is neither copied nor modified, the parameters given to the actions are views over it.
+     *
+     * @param arguments
+     * @return the arguments which are not options
+     * @throws IllegalArgumentException if an option is unknown or misses parameters, see {@link CmdLineArgumentException}
+     * @throws IllegalStateException if the options break a rule or an action fails, see {@link CmdLineStateException};
+     * if all the errors are collected, the exception of the first error suppresses the exceptions of the others
+     */
+    public List<String> process(String[] arguments) {
+        Objects.requireNonNull(arguments);
+        var event = new ParserEvents.ProcessEvent();
+        if (metrics == null && !event.isEnabled())
+            return process(new ParseSession(nbOptions), arguments);
+        event.begin();
+        var start = System.nanoTime();
+        var session = new ParseSession(nbOptions);
+        try {
+            var result = process(session, arguments);
+            record(event, start, arguments.length, session, null);
+            return result;
+        } catch (RuntimeException e) {
+            record(event, start, arguments.length, session, ErrorCode.of(e));
+            throw e;
+        }
+    }
+
+    private boolean hasArgFiles(String[] arguments) {
+        return argFileMode != null && Arrays.stream(arguments).anyMatch(ArgFile::isArgFile);
+    }
+
+    private List<String> process(ParseSession session, String[] arguments) {
+        var hasArgFiles = hasArgFiles(arguments);
+        // the content of the argument files is not part of the key, they are read each time
+        if (parseCache != null && !hasArgFiles)
+            return apply(session, parseCache.get(arguments, this));
+        // all the errors are only known once the whole command line has been validated
+        if (allErrors)
+            return apply(session, parseInPlace(arguments));
+        if (hasArgFiles) {
+            process(session, ArgFile.expand(Arrays.asList(arguments).iterator(), argFileMode), session::addArgument);
+            return session.arguments();
+        }
+        if (shortOptions != null) {
+            process(session, Arrays.asList(arguments).iterator(), session::addArgument);
+            return session.arguments();
+        }
+        for (int i = 0; i < arguments.length; i++) {
+            var arg = arguments[i];
+            if (!isOption(arg)) {
+                session.addArgument(arg);
+                continue;
+            }
+            var opt = processEntry(session, lookupOption(arg, 0, arg.length(), i), i);
+            if (arguments.length - i - 1 < opt.nbParameters)
+                throw ParseError.missingParameters(i, opt.name).exception();
+            apply(opt, session.parameters(arguments, i + 1, opt.nbParameters), i);
+            i += opt.nbParameters;
+        }
+        finish(session);
+        return session.arguments();
+    }
+
+    /**
+     * Process the arguments as {@link #process(String[])}, but report an invalid command line
+     * in the result instead of throwing an exception. The command line is validated before any
+     * action runs, as with {@link #parse(String[])}, so a rejected command line has not run any action,
+     * unless an action fails. Only the exceptions thrown by the observers are propagated.
+     *
+     * @param arguments
+     * @return the arguments which are not options, or the first error, or all the errors if they are collected
+     */
+    public ParseResult tryProcess(String[] arguments) {
+        Objects.requireNonNull(arguments);
+        var event = new ParserEvents.ProcessEvent();
+        if (metrics == null && !event.isEnabled())
+            return tryProcess(new ParseSession(nbOptions), arguments);
+        event.begin();
+        var start = System.nanoTime();
+        var session = new ParseSession(nbOptions);
+        var result = tryProcess(session, arguments);
+        record(event, start, arguments.length, session, result instanceof ParseResult.Failure failure ? failure.error().code() : null);
+        return result;
+    }
+
+    private ParseResult tryProcess(ParseSession session, String[] arguments) {
+        var cached = parseCache != null && !hasArgFiles(arguments);
+        var line = cached ? parseCache.lookup(arguments) : null;
+        if (line == null) {
+            // the array of the caller may change after the call, the cache keeps its own copy
+            var tokens = cached ? arguments.clone() : arguments;
+            ParsedCommandLine.Builder builder;
+            try {
+                builder = newLine(tokens);
+            } catch (CmdLineArgumentException e) {
+                // an argument file can not be read
+                return new ParseResult.Failure(e.error());
+            }
+            validate(new ParseSession(nbOptions), builder);
+            if (builder.error() != null)
+                return new ParseResult.Failure(builder.errors());
+            line = builder.build();
+            if (cached)
+                parseCache.put(tokens, line);
+        }
+        var error = run(session, line);
+        return error == null ? new ParseResult.Success(session.arguments()) : new ParseResult.Failure(error);
+    }
+
+    /**
+     * Count a call to process in the metrics and the Flight Recorder
+     *
+     * @param event begun with the process
+     * @param start {@link System#nanoTime()} when the process started
+     * @param nbTokens number of tokens given to the process
+     * @param session
+     * @param error why the process failed, or null
+     */
+    private void record(ParserEvents.ProcessEvent event, long start, int nbTokens, ParseSession session, ErrorCode error) {
+        if (metrics != null) {
+            var nanos = System.nanoTime() - start;
+            if (error == null)
+                metrics.recordProcess(nanos);
+            else
+                metrics.recordFailure(error, nanos);
+        }
+        if (event.shouldCommit()) {
+            event.tokenCount = nbTokens;
+            event.optionCount = session.nbProcessed();
+            event.outcome = error == null ? "SUCCESS" : error.name();
+            event.commit();
+        }
+    }
+
+    /**
+     * First phase of a process : find the options and check all the rules, without running
+     * any action nor signaling the observers. If the argument files are enabled, they are expanded.
+     * The array is copied, changing it afterwards does not change the command line.
+     *
+     * @param arguments
+     * @return the validated command line, to give to {@link #apply(ParsedCommandLine)}
+     * @throws IllegalArgumentException if an option is unknown or misses parameters
+     * @throws IllegalStateException if the options break a rule (conflict, required option, group);
+     * if all the errors are collected, the exception of the first error suppresses the exceptions of the others
+     */
+    public ParsedCommandLine parse(String[] arguments) {
+        Objects.requireNonNull(arguments);
+        return parseInPlace(arguments.clone());
+    }
+
+    /**
+     * Same as {@link #parse(String[])} without copying the array, which is kept by the command line
+     *
+     * @param arguments must not change as long as the command line is used
+     */
+    ParsedCommandLine parseInPlace(String[] arguments) {
+        var line = newLine(arguments);
+        validate(new ParseSession(nbOptions), line);
+        if (line.error() != null)
+            throw ParseError.exception(line.errors());
+        return line.build();
+    }
+
+    /**
+     * @param arguments
+     * @return an empty command line over the arguments, the argument files expanded
+     * @throws IllegalArgumentException if an argument file can not be read
+     */
+    private ParsedCommandLine.Builder newLine(String[] arguments) {
+        CharSequence[] tokens = arguments;
+        if (hasArgFiles(arguments)) {
+            var expanded = new ArrayList<CharSequence>();
+            ArgFile.expand(Arrays.asList(arguments).iterator(), argFileMode).forEachRemaining(expanded::add);
+            tokens = expanded.toArray(CharSequence[]::new);
+        }
+        return new ParsedCommandLine.Builder(this, tokens, allErrors);
+    }
+
+    /**
+     * Find the options of the command line and check the rules, the errors are given to
+     * {@link ParsedCommandLine.Builder#fail(ParseError)}, nothing is thrown.
+     * If all the errors are collected, the validation goes on after an error : an unknown option
+     * is skipped, an option in conflict or missing its parameters is still taken as seen,
+     * so the same option is not also reported as missing.
+     */
+    private void validate(ParseSession session, ParsedCommandLine.Builder line) {
+        var tokens = line.tokens();
+        for (int i = 0; i < tokens.length; i++) {
+            var arg = Objects.requireNonNull(tokens[i]);
+            if (!isOption(arg)) {
+                line.addArgument(i);
+                continue;
+            }
+            if (shortOptions != null) {
+                if (arg.length() == 1) {
+                    line.addArgument(i);
+                    continue;
+                }
+                if (arg.length() == 2 && arg.charAt(1) == '-') {
+                    for (i++; i < tokens.length; i++) {
+                        line.addArgument(i);
+                    }
+                    break;
+                }
+            }
+            var entry = lookup(arg, 0, arg.length());
+            if (entry == null && shortOptions != null && !isAmbiguous(arg, 0, arg.length())) {
+                i = validateGnuOption(session, line, i);
+                if (line.stopped())
+                    return;
+                continue;
+            }
+            if (entry == null) {
+                line.fail(lookupError(arg, 0, arg.length(), i));
+                if (line.stopped())
+                    return;
+                continue;
+            }
+            if (!check(session, line, entry, i, -1, entry.option.nbParameters))
+                return;
+            i += entry.option.nbParameters;
+        }
+        constraints.checkRules(session.seenOptions(), line.allErrors(), line::fail);
+    }
+
+    /**
+     * Same as {@link #processGnuOption} for the first phase
+     *
+     * @return the index of the last token used by the option
+     */
+    private int validateGnuOption(ParseSession session, ParsedCommandLine.Builder line, int i) {
+        var arg = line.tokens()[i];
+        if (arg.charAt(1) == '-') {
+            var equals = indexOf(arg, '=');
+            if (equals == -1) {
+                line.fail(ParseError.unknownOption(i, arg));
+                return i;
+            }
+            var entry = lookup(arg, 0, equals);
+            if (entry == null) {
+                line.fail(lookupError(arg, 0, equals, i));
+                return i;
+            }
+            if (entry.option.nbParameters == 0) {
+                line.fail(ParseError.unexpectedValue(i, entry.option.name));
+                return i;
+            }
+            check(session, line, entry, i, equals + 1, entry.option.nbParameters - 1);
+            return i + entry.option.nbParameters - 1;
+        }
+        for (int j = 1; j < arg.length(); j++) {
+            var c = arg.charAt(j);
+            var entry = c < MAX_SHORT_NAME ? shortOptions[c] : null;
+            if (entry == null) {
+                line.fail(ParseError.unknownOption(i, "-" + c));
+                if (line.stopped())
+                    return i;
+                continue;
+            }
+            if (entry.option.nbParameters != 0) {
+                var attached = j + 1 < arg.length();
+                var nbParameters = entry.option.nbParameters - (attached ? 1 : 0);
+                check(session, line, entry, i, attached ? j + 1 : -1, nbParameters);
+                return i + nbParameters;
+            }
+            if (!check(session, line, entry, i, -1, 0))
+                return i;
+        }
+        return i;
+    }
+
+    /**
+     * Check the option against the options already seen and that its parameters are there,
+     * then add it to the command line
+     *
+     * @param tokenIndex index of the token of the option
+     * @param attachedStart index in the token of the value attached to the option, or -1
+     * @param nbParameters number of parameters after the token of the option
+     * @return true if the validation goes on, false if it should stop
+     */
+    private boolean check(ParseSession session, ParsedCommandLine.Builder line, Entry entry, int tokenIndex, int attachedStart, int nbParameters) {
+        var error = constraints.conflictError(session.seenOptions(), entry.ordinal, tokenIndex);
+        if (error != null)
+            line.fail(error);
+        if (line.tokens().length - tokenIndex - 1 < nbParameters)
+            line.fail(ParseError.missingParameters(tokenIndex, entry.option.name));
+        if (line.stopped())
+            return false;
+        session.markSeen(entry.ordinal);
+        line.addOption(entry.ordinal, tokenIndex, attachedStart);
+        return true;
+    }
+
+    /**
+     * Second phase of a process : run the actions of a command line validated by {@link #parse(String[])},
+     * in order, and signal the observers. The options are neither looked up nor checked again.
+     *
+     * @param line a command line parsed by this parser
+     * @return the arguments which are not options
+     * @throws IllegalArgumentException if the command line was parsed by another parser
+     * @throws IllegalStateException if an action fails
+     */
+    public List<String> apply(ParsedCommandLine line) {
+        Objects.requireNonNull(line);
+        if (!line.isParsedBy(this))
+            throw new IllegalArgumentException("The command line was parsed by another parser");
+        return apply(new ParseSession(nbOptions), line);
+    }
+
+    private List<String> apply(ParseSession session, ParsedCommandLine line) {
+        var error = run(session, line);
+        if (error != null)
+            throw error.exception();
+        return session.arguments();
+    }
+
+    /**
+     * Run the actions of the command line and signal the observers
+     *
+     * @return the failure of an action, or null
+     */
+    private ParseError run(ParseSession session, ParsedCommandLine line) {
+        var tokens = line.tokens;
+        var parameters = new CharSequence[maxNbParameters];
+        for (int m = 0; m < line.size; m++) {
+            var ordinal = line.ordinals[m];
+            var opt = options[ordinal];
+            for (var observer : processedObservers) {
+                observer.onProcessedOption(optionsManager, session, opt);
+            }
+            session.markSeen(ordinal);
+            var token = line.tokenIndexes[m];
+            var attachedStart = line.attachedStarts[m];
+            var count = 0;
+            if (attachedStart != -1)
+                parameters[count++] = session.attachedValue(tokens[token], attachedStart, tokens[token].length());
+            for (var next = token + 1; count < opt.nbParameters; next++) {
+                parameters[count++] = tokens[next];
+            }
+            var error = tryApply(opt, session.parameters(parameters, 0, opt.nbParameters), token);
+            if (error != null)
+                return error;
+        }
+        for (var index : line.argumentIndexes) {
+            session.addArgument(tokens[index].toString());
+        }
+        for (var observer : finishedObservers) {
+            observer.onFinishedProcess(optionsManager, session);
+        }
+        return null;
+    }
+
+    /**
+     * @return the counters of the parse cache, empty if it is not enabled
+     */
+    public Optional<CacheStats> cacheStats() {
+        return Optional.ofNullable(parseCache).map(ParseCache::stats);
+    }
+
+    /**
+     * Process the arguments as they come, without ever holding all of them.
+     * If the argument files are enabled, they are expanded as they are met.
+     * The arguments which are not options are given to the consumer as soon as they are read,
+     * so the memory used does not depend on the number of arguments but on the largest number
+     * of parameters of an option.
+     *
+     * @param arguments consumed lazily, one token at a time
+     * @param argumentConsumer receives the arguments which are not options, in order
+     */
+    public void process(Iterator<String> arguments, Consumer<? super String> argumentConsumer) {
+        Objects.requireNonNull(arguments);
+        Objects.requireNonNull(argumentConsumer);
+        var event = new ParserEvents.ProcessEvent();
+        if (metrics == null && !event.isEnabled()) {
+            process(new ParseSession(nbOptions), argFileMode == null ? arguments : ArgFile.expand(arguments, argFileMode), argumentConsumer);
+            return;
+        }
+        event.begin();
+        var start = System.nanoTime();
+        var session = new ParseSession(nbOptions);
+        // the tokens are only counted for the Flight Recorder
+        var counted = event.isEnabled() ? new CountingIterator(arguments) : null;
+        var given = counted == null ? arguments : counted;
+        try {
+            process(session, argFileMode == null ? given : ArgFile.expand(given, argFileMode), argumentConsumer);
+            record(event, start, counted == null ? 0 : counted.count, session, null);
+        } catch (RuntimeException e) {
+            record(event, start, counted == null ? 0 : counted.count, session, ErrorCode.of(e));
+            throw e;
+        }
+    }
+
+    /**
+     * Counts the tokens read from an iterator
+     */
+    private static final class CountingIterator implements Iterator<String> {
+        private final Iterator<String> iterator;
+        private int count;
+
+        private CountingIterator(Iterator<String> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public String next() {
+            var next = iterator.next();
+            count++;
+            return next;
+        }
+    }
+
+    private static CharSequence next(ParseSession session, Iterator<? extends CharSequence> arguments) {
+        var next = Objects.requireNonNull(arguments.next());
+        session.advance();
+        return next;
+    }
+
+    private void process(ParseSession session, Iterator<? extends CharSequence> arguments, Consumer<? super String> argumentConsumer) {
+        var parameters = new CharSequence[maxNbParameters];
+        while (arguments.hasNext()) {
+            var arg = next(session, arguments);
+            if (!isOption(arg)) {
+                argumentConsumer.accept(arg.toString());
+                continue;
+            }
+            if (shortOptions != null) {
+                if (arg.length() == 1) {
+                    argumentConsumer.accept(arg.toString());
+                    continue;
+                }
+                if (arg.length() == 2 && arg.charAt(1) == '-') {
+                    while (arguments.hasNext()) {
+                        argumentConsumer.accept(next(session, arguments).toString());
+                    }
+                    break;
+                }
+                processGnuOption(session, arg, arguments, parameters);
+                continue;
+            }
+            var index = session.position();
+            var opt = processEntry(session, lookupOption(arg, 0, arg.length(), index), index);
+            applyWithParameters(session, opt, null, arguments, parameters);
+        }
+        finish(session);
+    }
+
+    /**
+     * Process a token of the GNU syntax, see {@link CmdLineParser#enableGnuSyntax()}
+     *
+     * @param arg a token starting with '-', other than "-" and "--"
+     */
+    private void processGnuOption(ParseSession session, CharSequence arg, Iterator<? extends CharSequence> arguments, CharSequence[] parameters) {
+        var index = session.position();
+        var entry = lookup(arg, 0, arg.length());
+        if (entry == null && isAmbiguous(arg, 0, arg.length()))
+            throw lookupError(arg, 0, arg.length(), index).exception();
+        if (entry != null) {
+            applyWithParameters(session, processEntry(session, entry, index), null, arguments, parameters);
+            return;
+        }
+        if (arg.charAt(1) == '-') {
+            var equals = indexOf(arg, '=');
+            if (equals == -1)
+                throw ParseError.unknownOption(index, arg).exception();
+            var opt = processEntry(session, lookupOption(arg, 0, equals, index), index);
+            if (opt.nbParameters == 0)
+                throw ParseError.unexpectedValue(index, opt.name).exception();
+            applyWithParameters(session, opt, session.attachedValue(arg, equals + 1, arg.length()), arguments, parameters);
+            return;
+        }
+        for (int i = 1; i < arg.length(); i++) {
+            var c = arg.charAt(i);
+            var shortOption = c < MAX_SHORT_NAME ? shortOptions[c] : null;
+            if (shortOption == null)
+                throw ParseError.unknownOption(index, "-" + c).exception();
+            var opt = processEntry(session, shortOption, index);
+            if (opt.nbParameters != 0) {
+                var attachedValue = i + 1 < arg.length() ? session.attachedValue(arg, i + 1, arg.length()) : null;
+                applyWithParameters(session, opt, attachedValue, arguments, parameters);
+                return;
+            }
+            apply(opt, session.parameters(parameters, 0, 0), index);
+        }
+    }
+
+    private static int indexOf(CharSequence arg, char c) {
+        for (int i = 0; i < arg.length(); i++) {
+            if (arg.charAt(i) == c)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Read the parameters of the option from the arguments and apply the option
+     *
+     * @param attachedValue the first parameter if it was attached to the name of the option, or null
+     */
+    private static void applyWithParameters(ParseSession session, Option opt, CharSequence attachedValue,
+                                            Iterator<? extends CharSequence> arguments, CharSequence[] parameters) {
+        var index = session.position();
+        var i = 0;
+        if (attachedValue != null)
+            parameters[i++] = attachedValue;
+        for (; i < opt.nbParameters; i++) {
+            if (!arguments.hasNext())
+                throw ParseError.missingParameters(index, opt.name).exception();
+            parameters[i] = next(session, arguments);
+        }
+        apply(opt, session.parameters(parameters, 0, opt.nbParameters), index);
+    }
+
+    /**
+     * Same as {@link #process(Iterator, Consumer)}, the stream is consumed lazily and not closed
+     *
+     * @param arguments
+     * @param argumentConsumer receives the arguments which are not options, in order
+     */
+    public void process(Stream<String> arguments, Consumer<? super String> argumentConsumer) {
+        Objects.requireNonNull(arguments);
+        Objects.requireNonNull(argumentConsumer);
+        process(arguments.iterator(), argumentConsumer);
+    }
+
+    /**
+     * Process all the command lines in parallel, on the common fork-join pool.
+     * The actions of the options are called concurrently, they must be thread-safe.
+     * Each command line is validated before its actions run, see {@link #tryProcess(String[])}.
+     *
+     * @param commandLines
+     * @return the outcome of each command line, in the same order
+     */
+    public List<Outcome> processAll(List<String[]> commandLines) {
+        Objects.requireNonNull(commandLines);
+        return processAll(commandLines, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Process all the command lines in parallel, on the given pool.
+     * The actions of the options are called concurrently, they must be thread-safe.
+     * Each command line is validated before its actions run, see {@link #tryProcess(String[])}.
+     *
+     * @param commandLines
+     * @param pool the threads used to process the command lines
+     * @return the outcome of each command line, in the same order
+     */
+    public List<Outcome> processAll(List<String[]> commandLines, ForkJoinPool pool) {
+        Objects.requireNonNull(commandLines);
+        Objects.requireNonNull(pool);
+        var inputs = commandLines.toArray(String[][]::new);
+        var outcomes = new Outcome[inputs.length];
+        pool.submit(() -> IntStream.range(0, inputs.length).parallel().forEach(i -> outcomes[i] = outcomeOf(inputs[i]))).join();
+        return List.of(outcomes);
+    }
+
+    /**
+     * Process the command lines of the stream, in parallel if the stream is parallel.
+     * The order of the outcomes is the order of the command lines, each command line is validated
+     * before its actions run, see {@link #tryProcess(String[])}.
+     *
+     * @param commandLines
+     * @return the outcome of each command line, lazily computed
+     */
+    public Stream<Outcome> processAll(Stream<String[]> commandLines) {
+        Objects.requireNonNull(commandLines);
+        return commandLines.map(this::outcomeOf);
+    }
+
+    /**
+     * @return the outcome of the command line, validated before any action runs, see {@link #tryProcess(String[])}
+     */
+    private Outcome outcomeOf(String[] arguments) {
+        try {
+            var result = tryProcess(arguments);
+            if (result instanceof ParseResult.Failure failure)
+                return new Outcome(null, ParseError.exception(failure.errors()));
+            return new Outcome(((ParseResult.Success) result).arguments(), null);
+        } catch (RuntimeException e) {
+            // an observer failed
+            return new Outcome(null, e);
+        }
+    }
+
+    /**
+     * @param tokenIndex index of the token in the arguments, used to report an unknown option
+     * @return the option named by the characters {@code [start, end)} of the token
+     * @throws IllegalArgumentException if the name is unknown or ambiguous
+     */
+    private Entry lookupOption(CharSequence token, int start, int end, int tokenIndex) {
+        var entry = lookup(token, start, end);
+        if (entry == null)
+            throw lookupError(token, start, end, tokenIndex).exception();
+        return entry;
+    }
+
+    /**
+     * @return the option named by the characters {@code [start, end)} of the token,
+     * or null if the name is unknown or ambiguous
+     */
+    private Entry lookup(CharSequence token, int start, int end) {
+        return prefixTrie == null ? optionTable.get(token, start, end) : prefixTrie.find(token, start, end);
+    }
+
+    private boolean isAmbiguous(CharSequence token, int start, int end) {
+        return prefixTrie != null && prefixTrie.isPrefix(token, start, end);
+    }
+
+    /**
+     * @return why the characters {@code [start, end)} of the token do not name an option
+     */
+    private ParseError lookupError(CharSequence token, int start, int end, int tokenIndex) {
+        var name = token.subSequence(start, end);
+        if (prefixTrie != null) {
+            var candidates = prefixTrie.candidates(token, start, end);
+            if (!candidates.isEmpty())
+                return ParseError.ambiguousOption(tokenIndex, name, candidates);
+        }
+        return ParseError.unknownOption(tokenIndex, name);
+    }
+
+    /**
+     * Check the option against the options already seen, signal it to the observers
+     * and mark it as seen
+     *
+     * @param tokenIndex index of the token of the option
+     * @return the option
+     */
+    private Option processEntry(ParseSession session, Entry entry, int tokenIndex) {
+        var opt = entry.option;
+        constraints.checkProcessed(session.seenOptions(), entry.ordinal, tokenIndex);
+        for (var observer : processedObservers) {
+            observer.onProcessedOption(optionsManager, session, opt);
+        }
+        session.markSeen(entry.ordinal);
+        return opt;
+    }
+
+    /**
+     * @param tokenIndex index of the token of the option
+     * @throws IllegalStateException if the action fails, the exception of the action is the cause
+     */
+    private static void apply(Option opt, ParameterSlice params, int tokenIndex) {
+        var error = tryApply(opt, params, tokenIndex);
+        if (error != null)
+            throw error.exception();
+    }
+
+    /**
+     * @return the failure of the action, or null
+     */
+    private static ParseError tryApply(Option opt, ParameterSlice params, int tokenIndex) {
+        var event = new ParserEvents.ActionEvent();
+        event.begin();
+        ParseError error = null;
+        try {
+            opt.action.accept(params);
+        } catch (Exception e) {
+            error = ParseError.actionFailed(tokenIndex, opt.name, e);
+        }
+        if (event.shouldCommit()) {
+            event.option = opt.name;
+            event.failed = error != null;
+            event.commit();
+        }
+        return error;
+    }
+
+    private void finish(ParseSession session) {
+        constraints.checkFinished(session.seenOptions());
+        for (var observer : finishedObservers) {
+            observer.onFinishedProcess(optionsManager, session);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import fr.uge.poo.cmdlineparser.ex6.CmdLineParser.Option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * The rules between options of a compiled parser, evaluated as bitsets.
+ * Each option has an ordinal, the options seen during a process are the bits of a word array
+ * owned by the {@link ParseSession}, and each rule is a mask over the same words, so checking
+ * a rule costs a few word operations whatever the number of options or aliases.
+ */
+final class Constraints {
+
+    enum GroupKind {
+        EXACTLY_ONE("Exactly one of"),
+        AT_LEAST_ONE("At least one of");
+
+        private final String message;
+
+        GroupKind(String message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * A group of options as registered, resolved to a mask at compile time
+     *
+     * @param kind
+     * @param names
+     */
+    record Group(GroupKind kind, List<String> names) {
+        Group {
+            Objects.requireNonNull(kind);
+            names = List.copyOf(names);
+        }
+    }
+
+    private record Requirement(int ordinal, long[] mask) {
+    }
+
+    private record CompiledGroup(Group group, long[] mask) {
+    }
+
+    private final Option[] options;
+    private final long[][] conflicts;
+    private final long[] required;
+    private final Requirement[] requirements;
+    private final CompiledGroup[] groups;
+
+    private Constraints(Option[] options, long[][] conflicts, long[] required, Requirement[] requirements, CompiledGroup[] groups) {
+        this.options = options;
+        this.conflicts = conflicts;
+        this.required = required;
+        this.requirements = requirements;
+        this.groups = groups;
+    }
+
+    /**
+     * @param nbOptions
+     * @return the number of words needed to hold a bit per option
+     */
+    static int words(int nbOptions) {
+        return (nbOptions + 63) >>> 6;
+    }
+
+    /**
+     * Resolve the names used by the rules to ordinals.
+     * A conflict or a requirement with an unknown option is ignored, as before,
+     * but a group with an unknown option can never be satisfied and is rejected.
+     *
+     * @param options the canonical options, the index of an option is its ordinal
+     * @param ordinals the ordinal of each name and alias
+     * @param groups
+     * @return the constraints
+     */
+    static Constraints of(List<Option> options, Map<String, Integer> ordinals, List<Group> groups) {
+        var words = words(options.size());
+        var conflicts = new long[options.size()][];
+        var required = new long[words];
+        var requirements = new ArrayList<Requirement>();
+        for (int ordinal = 0; ordinal < options.size(); ordinal++) {
+            var option = options.get(ordinal);
+            if (option.isRequired)
+                set(required, ordinal);
+            for (var name : option.conflicts) {
+                var other = ordinals.get(name);
+                if (other == null)
+                    continue;
+                // a conflict is symmetric, whichever is seen first the second one is rejected
+                set(maskOf(conflicts, ordinal, words), other);
+                set(maskOf(conflicts, other, words), ordinal);
+            }
+            var mask = new long[words];
+            for (var name : option.requires) {
+                var other = ordinals.get(name);
+                if (other != null)
+                    set(mask, other);
+            }
+            if (!isEmpty(mask))
+                requirements.add(new Requirement(ordinal, mask));
+        }
+        var compiledGroups = new ArrayList<CompiledGroup>();
+        for (var group : groups) {
+            var mask = new long[words];
+            for (var name : group.names) {
+                var ordinal = ordinals.get(name);
+                if (ordinal == null)
+                    throw new IllegalStateException("Option " + name + " of the group is not registered");
+                set(mask, ordinal);
+            }
+            compiledGroups.add(new CompiledGroup(group, mask));
+        }
+        return new Constraints(options.toArray(Option[]::new), conflicts, required,
+                requirements.toArray(Requirement[]::new), compiledGroups.toArray(CompiledGroup[]::new));
+    }
+
+    /**
+     * Called when an option is processed, before it is marked as seen
+     *
+     * @param seen the options already seen
+     * @param ordinal the processed option
+     * @param tokenIndex index of the token of the option
+     * @throws IllegalStateException if the option is in conflict with an option already seen
+     */
+    void checkProcessed(long[] seen, int ordinal, int tokenIndex) {
+        var error = conflictError(seen, ordinal, tokenIndex);
+        if (error != null)
+            throw error.exception();
+    }
+
+    /**
+     * Same as {@link #checkProcessed(long[], int, int)} without throwing
+     *
+     * @return the conflict, or null
+     */
+    ParseError conflictError(long[] seen, int ordinal, int tokenIndex) {
+        var mask = conflicts[ordinal];
+        if (mask == null)
+            return null;
+        var event = new ParserEvents.ValidationEvent();
+        event.begin();
+        var passed = firstCommon(seen, mask) == -1;
+        if (event.shouldCommit()) {
+            event.phase = ParserEvents.ValidationEvent.CONFLICTS;
+            event.option = options[ordinal].name;
+            event.passed = passed;
+            event.commit();
+        }
+        return passed ? null : ParseError.conflict(tokenIndex, options[ordinal].name, names(seen, mask, true));
+    }
+
+    /**
+     * Called at the end of a process
+     *
+     * @param seen the options seen during the process
+     * @throws IllegalStateException if a required option, a requirement or a group is missing
+     */
+    void checkFinished(long[] seen) {
+        checkRules(seen, false, THROW);
+    }
+
+    private static final Consumer<ParseError> THROW = error -> {
+        throw error.exception();
+    };
+
+    /**
+     * Same as {@link #checkFinished(long[])}, the rules broken are reported instead of thrown
+     *
+     * @param seen the options seen during the process
+     * @param all true to report all the rules broken, false to stop at the first one
+     * @param errors receives the rules broken
+     */
+    void checkRules(long[] seen, boolean all, Consumer<? super ParseError> errors) {
+        var event = new ParserEvents.ValidationEvent();
+        event.begin();
+        var passed = false;
+        try {
+            passed = reportRules(seen, all, errors);
+        } finally {
+            if (event.shouldCommit()) {
+                event.phase = ParserEvents.ValidationEvent.REQUIRED;
+                event.passed = passed;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * @return true if no rule is broken
+     */
+    private boolean reportRules(long[] seen, boolean all, Consumer<? super ParseError> errors) {
+        var passed = true;
+        if (firstMissing(seen, required) != -1) {
+            errors.accept(ParseError.missingRequired(names(seen, required, false)));
+            if (!all)
+                return false;
+            passed = false;
+        }
+        for (var requirement : requirements) {
+            if (isSet(seen, requirement.ordinal) && firstMissing(seen, requirement.mask) != -1) {
+                errors.accept(ParseError.missingRequirement(options[requirement.ordinal].name, names(seen, requirement.mask, false)));
+                if (!all)
+                    return false;
+                passed = false;
+            }
+        }
+        for (var group : groups) {
+            var count = countCommon(seen, group.mask);
+            if (count == 0 || (count > 1 && group.group.kind == GroupKind.EXACTLY_ONE)) {
+                errors.accept(ParseError.group(group.group.kind.message, group.group.names));
+                if (!all)
+                    return false;
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * @param seen the options seen
+     * @param mask
+     * @param common true for the options of the mask which are seen, false for the ones which are not
+     * @return the names of the options, by ordinal
+     */
+    private List<String> names(long[] seen, long[] mask, boolean common) {
+        var names = new ArrayList<String>();
+        for (int i = 0; i < mask.length; i++) {
+            for (var word = mask[i] & (common ? seen[i] : ~seen[i]); word != 0; word &= word - 1) {
+                names.add(options[(i << 6) + Long.numberOfTrailingZeros(word)].name);
+            }
+        }
+        return names;
+    }
+
+    private static long[] maskOf(long[][] masks, int ordinal, int words) {
+        var mask = masks[ordinal];
+        if (mask == null) {
+            mask = new long[words];
+            masks[ordinal] = mask;
+        }
+        return mask;
+    }
+
+    static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        return Arrays.stream(bits).allMatch(word -> word == 0);
+    }
+
+    /**
+     * @return the first index set in both, or -1
+     */
+    private static int firstCommon(long[] bits, long[] mask) {
+        for (int i = 0; i < mask.length; i++) {
+            var word = bits[i] & mask[i];
+            if (word != 0)
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+        return -1;
+    }
+
+    /**
+     * @return the first index set in the mask but not in bits, or -1
+     */
+    private static int firstMissing(long[] bits, long[] mask) {
+        for (int i = 0; i < mask.length; i++) {
+            var word = mask[i] & ~bits[i];
+            if (word != 0)
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+        return -1;
+    }
+
+    private static int countCommon(long[] bits, long[] mask) {
+        var count = 0;
+        for (int i = 0; i < mask.length; i++) {
+            count += Long.bitCount(bits[i] & mask[i]);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,67 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * The client of a {@link ParserDaemon} for code already running in a JVM : it sends an invocation to
+ * the daemon and copies what the daemon sends back to an output and an error stream.
+ * From a shell, use {@code bin/paint-client}, which does not start a JVM.
+ */
+public final class DaemonClient {
+
+    private DaemonClient() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Run the invocation on the daemon listening on the socket
+     *
+     * @param socket path of the socket of the daemon
+     * @param invocation
+     * @param out receives the output of the command
+     * @param err receives the errors of the command
+     * @return the exit code of the command
+     * @throws IOException if the daemon can not be reached or stops answering
+     */
+    public static int run(Path socket, ParserDaemon.Invocation invocation, OutputStream out, OutputStream err) throws IOException {
+        Objects.requireNonNull(socket);
+        Objects.requireNonNull(invocation);
+        Objects.requireNonNull(out);
+        Objects.requireNonNull(err);
+        try (var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            ParserDaemon.writeInvocation(new BufferedOutputStream(Channels.newOutputStream(channel)), invocation);
+            var input = new BufferedInputStream(Channels.newInputStream(channel));
+            for (String line; (line = ParserDaemon.readUntil(input, '\n')) != null; ) {
+                if (line.startsWith(ParserDaemon.OUT)) {
+                    copy(line.substring(ParserDaemon.OUT.length()), out);
+                } else if (line.startsWith(ParserDaemon.ERR)) {
+                    copy(line.substring(ParserDaemon.ERR.length()), err);
+                } else if (line.startsWith(ParserDaemon.EXIT)) {
+                    out.flush();
+                    err.flush();
+                    try {
+                        return Integer.parseInt(line.substring(ParserDaemon.EXIT.length()));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid exit code " + line, e);
+                    }
+                } else {
+                    throw new IOException("Unknown line " + line);
+                }
+            }
+            throw new EOFException("The daemon closed the connection without an exit code");
+        }
+    }
+
+    private static void copy(String line, OutputStream stream) throws IOException {
+        stream.write((line + '\n').getBytes(StandardCharsets.UTF_8));
+        stream.flush();
+    }
+}
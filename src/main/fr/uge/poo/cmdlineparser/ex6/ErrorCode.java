@@ -0,0 +1,59 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+/**
+ * Why a command line was rejected, carried by the exceptions thrown by the parser
+ */
+public enum ErrorCode {
+    /**
+     * A token starting with '-' is not the name of an option
+     */
+    UNKNOWN_OPTION,
+    /**
+     * A prefix abbreviates several options, see {@link CmdLineParser#enableAbbreviations()}
+     */
+    AMBIGUOUS_OPTION,
+    /**
+     * The command line ends before all the parameters of an option
+     */
+    MISSING_PARAMETERS,
+    /**
+     * A value is attached to an option which takes no parameter
+     */
+    UNEXPECTED_VALUE,
+    /**
+     * An argument file can not be read or is malformed, see {@link ArgFile}
+     */
+    ARGUMENT_FILE,
+    /**
+     * An option is in conflict with an option seen before
+     */
+    CONFLICT,
+    /**
+     * A required option has not been used
+     */
+    MISSING_REQUIRED,
+    /**
+     * An option has been used without an option it requires
+     */
+    MISSING_REQUIREMENT,
+    /**
+     * The options used do not satisfy a group, like {@link CmdLineParser#requireExactlyOneOf(String...)}
+     */
+    GROUP,
+    /**
+     * The action of an option failed
+     */
+    ACTION_FAILED,
+    /**
+     * Any other failure, not raised by the parser itself
+     */
+    OTHER;
+
+    /**
+     * @param e
+     * @return the code carried by the exception, or {@link #OTHER} if it was not thrown by the parser
+     */
+    public static ErrorCode of(Throwable e) {
+        return e instanceof CmdLineError error ? error.code() : OTHER;
+    }
+}
@@ -0,0 +1,27 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+/**
+ * Levels of the events logged by a {@link CmdLineParser}, from the most verbose to none
+ */
+public enum LogLevel {
+    /**
+     * Every processed option and every end of process
+     */
+    DEBUG,
+    /**
+     * The registration of the options
+     */
+    INFO,
+    /**
+     * Nothing is logged, the parser does not even install its logger
+     */
+    OFF;
+
+    /**
+     * @param threshold the level configured for the logger
+     * @return true if an event of this level has to be logged with this threshold
+     */
+    boolean isEnabled(LogLevel threshold) {
+        return this != OFF && compareTo(threshold) >= 0;
+    }
+}
@@ -0,0 +1,36 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+/**
+ * Where the events of a {@link CmdLineParser} are written.
+ * The message is a {@link String#format(String, Object...)} pattern with one argument, so a sink
+ * can defer the formatting, {@link AsyncLogSink} does it on its own thread.
+ */
+@FunctionalInterface
+public interface LogSink {
+
+    void log(LogLevel level, String format, Object argument);
+
+    /**
+     * A sink formatting and writing each event synchronously, in the calling thread
+     *
+     * @param appendable where the lines are written
+     * @return the sink
+     */
+    static LogSink of(Appendable appendable) {
+        Objects.requireNonNull(appendable);
+        return (level, format, argument) -> {
+            try {
+                appendable.append(level + " " + String.format(format, argument) + "\n");
+                if (appendable instanceof Flushable flushable)
+                    flushable.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Serve the counters of a parser in the Prometheus text format on {@code GET /metrics},
+ * with the HTTP server of the JDK. The text is rendered for each request, nothing is kept.
+ */
+public final class MetricsHttpServer implements Closeable {
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+
+    /**
+     * Bind the address and start serving, on a single background thread
+     *
+     * @param address where to listen, a port 0 picks a free port, see {@link #address()}
+     * @param metrics
+     * @throws IOException if the address can not be bound
+     */
+    public MetricsHttpServer(InetSocketAddress address, ParserMetrics metrics) throws IOException {
+        Objects.requireNonNull(address);
+        Objects.requireNonNull(metrics);
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> handle(exchange, metrics));
+        server.start();
+    }
+
+    private static void handle(HttpExchange exchange, ParserMetrics metrics) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            var body = metrics.prometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    /**
+     * @return the address the server listens on
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stop the server, the requests in progress are not waited for
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
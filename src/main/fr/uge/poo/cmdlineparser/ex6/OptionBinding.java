@@ -0,0 +1,373 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import fr.uge.poo.cmdlineparser.ex6.CmdLineParser.Option;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Options derived at runtime from the {@link CmdLineOption} annotations of a type.
+ * <p>
+ * The annotated setters of a builder, or the annotated components of a record, are resolved once
+ * per type into {@link MethodHandle}s taking the parameters of the option and calling the setter
+ * with the converted values; the values of a record are kept in an array per primitive type until
+ * its constructor is called, so the primitive values are never boxed. Processing the
+ * arguments only invokes these handles, no reflection is used once a type has been bound.
+ * The conversions are the ones of the annotation processor : String, int, long, double, boolean,
+ * and InetSocketAddress from a hostname and a port; a single boolean parameter is a flag.
+ */
+public final class OptionBinding {
+    private static final MethodHandle INT_AT;
+    private static final MethodHandle LONG_AT;
+    private static final MethodHandle DOUBLE_AT;
+    private static final MethodHandle BOOLEAN_AT;
+    private static final MethodHandle GET;
+    private static final MethodHandle SOCKET_ADDRESS_AT;
+
+    static {
+        var lookup = MethodHandles.lookup();
+        try {
+            INT_AT = lookup.findVirtual(ParameterSlice.class, "intAt", MethodType.methodType(int.class, int.class));
+            LONG_AT = lookup.findVirtual(ParameterSlice.class, "longAt", MethodType.methodType(long.class, int.class));
+            DOUBLE_AT = lookup.findVirtual(ParameterSlice.class, "doubleAt", MethodType.methodType(double.class, int.class));
+            BOOLEAN_AT = lookup.findVirtual(ParameterSlice.class, "booleanAt", MethodType.methodType(boolean.class, int.class));
+            GET = lookup.findVirtual(ParameterSlice.class, "get", MethodType.methodType(String.class, int.class));
+            SOCKET_ADDRESS_AT = lookup.findStatic(OptionBinding.class, "socketAddressAt",
+                    MethodType.methodType(InetSocketAddress.class, ParameterSlice.class, int.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * An annotated setter, or record component, resolved to a handle
+     *
+     * @param annotation
+     * @param nbParameters number of arguments taken by the option
+     * @param invoker (Object target, ParameterSlice parameters)void
+     */
+    private record Binding(CmdLineOption annotation, int nbParameters, MethodHandle invoker) {
+        /**
+         * @param action calls the invoker on the target
+         * @return the option
+         */
+        Option toOption(Option.Action action) {
+            var builder = new Option.OptionsBuilder(annotation.value(), nbParameters)
+                    .setSliceAction(action)
+                    .addAliases(annotation.aliases());
+            if (annotation.required())
+                builder.isRequired();
+            if (!annotation.doc().isEmpty())
+                builder.doc(annotation.doc());
+            return builder.build();
+        }
+    }
+
+    private static final ClassValue<List<Binding>> SETTERS = new ClassValue<>() {
+        @Override
+        protected List<Binding> computeValue(Class<?> type) {
+            return settersOf(type);
+        }
+    };
+
+    private static final ClassValue<RecordParser> RECORDS = new ClassValue<>() {
+        @Override
+        protected RecordParser computeValue(Class<?> type) {
+            return new RecordParser(type);
+        }
+    };
+
+    private OptionBinding() {
+        throw new AssertionError();
+    }
+
+    /**
+     * @param target an instance of a type with {@link CmdLineOption} setters
+     * @return an option per annotated setter, calling the setter on the target
+     * @throws IllegalArgumentException if the type has no annotated setter or a setter can not be bound
+     */
+    static List<Option> options(Object target) {
+        Objects.requireNonNull(target);
+        return SETTERS.get(target.getClass()).stream().map(binding -> binding.toOption(params -> invoke(binding.invoker, target, params))).toList();
+    }
+
+    /**
+     * Create a record from the arguments, each annotated component being an option.
+     * A component whose option is not used has the default value of its type.
+     * The parser of a record type is built once and shared, this method is thread-safe.
+     *
+     * @param type a record with {@link CmdLineOption} components
+     * @param arguments
+     * @param argumentConsumer receives the arguments which are not options, in order
+     * @param <R> type of the record
+     * @return the record
+     * @throws IllegalArgumentException if the record can not be bound or the arguments are invalid
+     */
+    public static <R extends Record> R parse(Class<R> type, String[] arguments, Consumer<? super String> argumentConsumer) {
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(arguments);
+        Objects.requireNonNull(argumentConsumer);
+        return type.cast(RECORDS.get(type).parse(arguments, argumentConsumer));
+    }
+
+    /**
+     * The name and the parameter types of a method, an overriding method has the same signature
+     */
+    private record Signature(String name, List<Class<?>> parameterTypes) {
+    }
+
+    private static List<Binding> settersOf(Class<?> type) {
+        var lookup = lookupIn(type);
+        var bindings = new ArrayList<Binding>();
+        var bound = new HashSet<Signature>();
+        for (var current = type; current != null; current = current.getSuperclass()) {
+            for (var method : current.getDeclaredMethods()) {
+                // a bridge method copies the annotations of the method it calls
+                if (method.isBridge() || method.isSynthetic())
+                    continue;
+                var annotation = method.getAnnotation(CmdLineOption.class);
+                if (annotation == null)
+                    continue;
+                if (Modifier.isStatic(method.getModifiers()))
+                    throw new IllegalArgumentException("An option should be declared on an instance method : " + method);
+                // the classes are walked from the most derived, a setter already bound is overridden
+                if (!Modifier.isPrivate(method.getModifiers()) && !bound.add(new Signature(method.getName(), List.of(method.getParameterTypes()))))
+                    continue;
+                bindings.add(bind(annotation, unreflect(lookup, method)));
+            }
+        }
+        if (bindings.isEmpty())
+            throw new IllegalArgumentException("No option declared on " + type.getName());
+        bindings.sort(Comparator.comparing(binding -> binding.annotation.value()));
+        return List.copyOf(bindings);
+    }
+
+    /**
+     * Adapt a setter (T, P1 .. Pn)R to (Object, ParameterSlice)void, each parameter being read
+     * from the slice by its converter
+     *
+     * @param annotation
+     * @param setter
+     */
+    private static Binding bind(CmdLineOption annotation, MethodHandle setter) {
+        var types = setter.type().parameterList().subList(1, setter.type().parameterCount());
+        if (types.isEmpty())
+            throw new IllegalArgumentException("An option should be declared on a method with parameters : " + annotation.value());
+        var filters = new MethodHandle[types.size()];
+        var offset = 0;
+        if (types.equals(List.of(boolean.class))) {
+            filters[0] = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, ParameterSlice.class);
+        } else {
+            for (int i = 0; i < filters.length; i++) {
+                var reader = readerOf(types.get(i));
+                filters[i] = MethodHandles.insertArguments(reader, 1, offset);
+                offset += reader == SOCKET_ADDRESS_AT ? 2 : 1;
+            }
+        }
+        var handle = MethodHandles.filterArguments(setter, 1, filters);
+        // all the filters read the same slice
+        var reorder = new int[handle.type().parameterCount()];
+        Arrays.fill(reorder, 1, reorder.length, 1);
+        var targetType = handle.type().parameterType(0);
+        handle = MethodHandles.permuteArguments(handle, MethodType.methodType(handle.type().returnType(), targetType, ParameterSlice.class), reorder);
+        return new Binding(annotation, offset, handle.asType(MethodType.methodType(void.class, Object.class, ParameterSlice.class)));
+    }
+
+    private static MethodHandle readerOf(Class<?> type) {
+        if (type == int.class)
+            return INT_AT;
+        if (type == long.class)
+            return LONG_AT;
+        if (type == double.class)
+            return DOUBLE_AT;
+        if (type == boolean.class)
+            return BOOLEAN_AT;
+        if (type == String.class)
+            return GET;
+        if (type == InetSocketAddress.class)
+            return SOCKET_ADDRESS_AT;
+        throw new IllegalArgumentException("Parameters of type " + type.getName() + " are not supported");
+    }
+
+    private static InetSocketAddress socketAddressAt(ParameterSlice parameters, int index) {
+        return new InetSocketAddress(parameters.get(index), parameters.intAt(index + 1));
+    }
+
+    private static MethodHandles.Lookup lookupIn(Class<?> type) {
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Options of " + type.getName() + " are not accessible", e);
+        }
+    }
+
+    private static MethodHandle unreflect(MethodHandles.Lookup lookup, Method method) {
+        try {
+            return lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Option " + method + " is not accessible", e);
+        }
+    }
+
+    private static void invoke(MethodHandle invoker, Object target, ParameterSlice parameters) {
+        try {
+            invoker.invokeExact(target, parameters);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    /**
+     * The values of the components of the record being parsed by the current thread,
+     * in an array per type so the primitive values are not boxed
+     */
+    private static final class Values {
+        private static final int INT = 0;
+        private static final int LONG = 1;
+        private static final int DOUBLE = 2;
+        private static final int BOOLEAN = 3;
+        private static final int OBJECT = 4;
+        private static final Class<?>[] ARRAY_TYPES = {int[].class, long[].class, double[].class, boolean[].class, Object[].class};
+        private static final MethodHandle[] ARRAYS = new MethodHandle[ARRAY_TYPES.length];
+
+        static {
+            var lookup = MethodHandles.lookup();
+            var names = new String[]{"ints", "longs", "doubles", "booleans", "objects"};
+            try {
+                for (int kind = 0; kind < names.length; kind++) {
+                    ARRAYS[kind] = lookup.findGetter(Values.class, names[kind], ARRAY_TYPES[kind]);
+                }
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        private final int[] ints;
+        private final long[] longs;
+        private final double[] doubles;
+        private final boolean[] booleans;
+        private final Object[] objects;
+
+        /**
+         * @param sizes number of components of each kind
+         */
+        private Values(int[] sizes) {
+            ints = new int[sizes[INT]];
+            longs = new long[sizes[LONG]];
+            doubles = new double[sizes[DOUBLE]];
+            booleans = new boolean[sizes[BOOLEAN]];
+            objects = new Object[sizes[OBJECT]];
+        }
+
+        private static int kindOf(Class<?> type) {
+            if (type == int.class)
+                return INT;
+            if (type == long.class)
+                return LONG;
+            if (type == double.class)
+                return DOUBLE;
+            if (type == boolean.class)
+                return BOOLEAN;
+            if (type.isPrimitive())
+                throw new IllegalArgumentException("Options of type " + type.getName() + " are not supported");
+            return OBJECT;
+        }
+
+        /**
+         * @return (Values values, T value)void storing the value in the slot
+         */
+        private static MethodHandle setter(Class<?> type, int kind, int slot) {
+            var setter = MethodHandles.insertArguments(MethodHandles.arrayElementSetter(ARRAY_TYPES[kind]), 1, slot);
+            return MethodHandles.filterArguments(setter, 0, ARRAYS[kind])
+                    .asType(MethodType.methodType(void.class, Values.class, type));
+        }
+
+        /**
+         * @return (Values values)T reading the value of the slot
+         */
+        private static MethodHandle getter(Class<?> type, int kind, int slot) {
+            var getter = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(ARRAY_TYPES[kind]), 1, slot);
+            return MethodHandles.filterArguments(getter, 0, ARRAYS[kind])
+                    .asType(MethodType.methodType(type, Values.class));
+        }
+    }
+
+    /**
+     * The parser of a record type : each option stores its value in the {@link Values} of the current
+     * thread, then the canonical constructor is called with the values read from their slots
+     */
+    private static final class RecordParser {
+        private final ThreadLocal<Values> values = new ThreadLocal<>();
+        private final int[] sizes = new int[Values.ARRAY_TYPES.length];
+        private final MethodHandle constructor;
+        private final CompiledCmdLineParser parser;
+
+        private RecordParser(Class<?> type) {
+            if (!type.isRecord())
+                throw new IllegalArgumentException(type.getName() + " is not a record");
+            var lookup = lookupIn(type);
+            var components = type.getRecordComponents();
+            var types = Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new);
+            MethodHandle canonical;
+            try {
+                canonical = lookup.findConstructor(type, MethodType.methodType(void.class, types));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("The canonical constructor of " + type.getName() + " is not accessible", e);
+            }
+            var getters = new MethodHandle[types.length];
+            var cmdLineParser = new CmdLineParser();
+            for (int i = 0; i < components.length; i++) {
+                var annotation = components[i].getAccessor().getAnnotation(CmdLineOption.class);
+                if (annotation == null) {
+                    // the zero of the type, or null
+                    getters[i] = MethodHandles.dropArguments(MethodHandles.zero(types[i]), 0, Values.class);
+                    continue;
+                }
+                var kind = Values.kindOf(types[i]);
+                var slot = sizes[kind]++;
+                getters[i] = Values.getter(types[i], kind, slot);
+                var binding = bind(annotation, Values.setter(types[i], kind, slot));
+                cmdLineParser.addOption(binding.toOption(params -> invoke(binding.invoker, values.get(), params)));
+            }
+            if (Arrays.stream(sizes).sum() == 0)
+                throw new IllegalArgumentException("No option declared on " + type.getName());
+            // (Values values)Object, all the getters read the same values
+            var handle = MethodHandles.filterArguments(canonical, 0, getters);
+            handle = MethodHandles.permuteArguments(handle, MethodType.methodType(type, Values.class), new int[types.length]);
+            constructor = handle.asType(MethodType.methodType(Object.class, Values.class));
+            parser = cmdLineParser.compile();
+        }
+
+        private Object parse(String[] arguments, Consumer<? super String> argumentConsumer) {
+            var values = new Values(sizes);
+            this.values.set(values);
+            try {
+                parser.process(Arrays.asList(arguments).iterator(), argumentConsumer);
+            } finally {
+                this.values.remove();
+            }
+            try {
+                return constructor.invokeExact(values);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+    }
+}
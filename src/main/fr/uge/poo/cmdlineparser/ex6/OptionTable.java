@@ -0,0 +1,210 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable table from option names to values, built once all the names are known.
+ * <p>
+ * It is a two levels perfect hash table : the hash of a name selects a bucket, and each bucket
+ * owns a secondary table of size k * k (k being the number of names in the bucket) with a seed
+ * chosen so that the names of the bucket do not collide. A lookup is one hash, two array reads
+ * and one comparison of characters, a name that is not in the table is never stored anywhere.
+ * The few buckets containing names with the same {@link String#hashCode()} use a seeded hash
+ * of the characters instead.
+ *
+ * @param <V> type of the values
+ */
+final class OptionTable<V> {
+    private static final int MAX_SEED = 1 << 16;
+
+    private final int mask;
+    private final int[] offsets;
+    private final int[] sizes;
+    private final int[] seeds;
+    private final boolean[] deep;
+    private final String[] keys;
+    private final Object[] values;
+
+    private OptionTable(int mask, int[] offsets, int[] sizes, int[] seeds, boolean[] deep, String[] keys, Object[] values) {
+        this.mask = mask;
+        this.offsets = offsets;
+        this.sizes = sizes;
+        this.seeds = seeds;
+        this.deep = deep;
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Build the table from the given map, which is not kept
+     *
+     * @param byName
+     * @param <V>
+     * @return the immutable table
+     */
+    static <V> OptionTable<V> of(Map<String, ? extends V> byName) {
+        Objects.requireNonNull(byName);
+        var nbBuckets = Integer.highestOneBit(Math.max(1, byName.size() - 1)) << 1;
+        var mask = nbBuckets - 1;
+        var buckets = new ArrayList<List<String>>(nbBuckets);
+        for (int i = 0; i < nbBuckets; i++) {
+            buckets.add(new ArrayList<>(1));
+        }
+        for (var name : byName.keySet()) {
+            buckets.get(spread(name.hashCode()) & mask).add(name);
+        }
+        var offsets = new int[nbBuckets];
+        var sizes = new int[nbBuckets];
+        var seeds = new int[nbBuckets];
+        var deep = new boolean[nbBuckets];
+        var total = 0;
+        for (int b = 0; b < nbBuckets; b++) {
+            var k = buckets.get(b).size();
+            offsets[b] = total;
+            sizes[b] = k * k;
+            total += k * k;
+        }
+        var keys = new String[total];
+        var values = new Object[total];
+        for (int b = 0; b < nbBuckets; b++) {
+            var bucket = buckets.get(b);
+            if (bucket.isEmpty())
+                continue;
+            deep[b] = hasSameHashCodes(bucket);
+            seeds[b] = findSeed(bucket, sizes[b], deep[b]);
+            for (var name : bucket) {
+                var index = offsets[b] + slot(name, sizes[b], seeds[b], deep[b]);
+                keys[index] = name;
+                values[index] = byName.get(name);
+            }
+        }
+        return new OptionTable<>(mask, offsets, sizes, seeds, deep, keys, values);
+    }
+
+    /**
+     * @param name
+     * @return the value associated to the name, or null if the name is not in the table
+     */
+    V get(CharSequence name) {
+        Objects.requireNonNull(name);
+        return get(name, 0, name.length());
+    }
+
+    /**
+     * @param name
+     * @param start index of the first character of the name
+     * @param end index after the last character of the name
+     * @return the value associated to the characters {@code [start, end)} of name, or null
+     * if they are not a name of the table
+     */
+    @SuppressWarnings("unchecked")
+    V get(CharSequence name, int start, int end) {
+        Objects.requireNonNull(name);
+        Objects.checkFromToIndex(start, end, name.length());
+        var hash = hash(name, start, end);
+        var bucket = spread(hash) & mask;
+        var size = sizes[bucket];
+        if (size == 0)
+            return null;
+        var index = offsets[bucket];
+        if (size != 1)
+            index += deep[bucket]
+                    ? Math.floorMod(mix(seededHash(name, start, end, seeds[bucket])), size)
+                    : Math.floorMod(mix(hash ^ seeds[bucket]), size);
+        var key = keys[index];
+        if (key == null || !matches(key, name, start, end))
+            return null;
+        return (V) values[index];
+    }
+
+    /**
+     * @return the values of the table, a value associated to several names appears several times
+     */
+    List<V> values() {
+        @SuppressWarnings("unchecked")
+        var values = (List<V>) Arrays.stream(this.values).filter(Objects::nonNull).toList();
+        return values;
+    }
+
+    private static boolean hasSameHashCodes(List<String> bucket) {
+        return bucket.stream().mapToInt(String::hashCode).distinct().count() != bucket.size();
+    }
+
+    private static int findSeed(List<String> bucket, int size, boolean deep) {
+        if (size == 1)
+            return 0;
+        var used = new boolean[size];
+        for (int seed = 0; seed < MAX_SEED; seed++) {
+            Arrays.fill(used, false);
+            var collision = false;
+            for (var name : bucket) {
+                var slot = slot(name, size, seed, deep);
+                if (used[slot]) {
+                    collision = true;
+                    break;
+                }
+                used[slot] = true;
+            }
+            if (!collision)
+                return seed;
+        }
+        throw new IllegalStateException("No perfect hash found for the options " + bucket);
+    }
+
+    private static int slot(String name, int size, int seed, boolean deep) {
+        if (size == 1)
+            return 0;
+        return deep
+                ? Math.floorMod(mix(seededHash(name, 0, name.length(), seed)), size)
+                : Math.floorMod(mix(name.hashCode() ^ seed), size);
+    }
+
+    private static boolean matches(String key, CharSequence name, int start, int end) {
+        if (start == 0 && end == name.length())
+            return key.contentEquals(name);
+        if (key.length() != end - start)
+            return false;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != name.charAt(start + i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Same value as {@link String#hashCode()} of the characters, which is cached by a whole string
+     */
+    private static int hash(CharSequence name, int start, int end) {
+        if (name instanceof String s && start == 0 && end == s.length())
+            return s.hashCode();
+        var hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + name.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int seededHash(CharSequence name, int start, int end, int seed) {
+        var hash = seed * 0x9E3779B9;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ name.charAt(i)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9 >>> 7;
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,190 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable compressed trie from option names to values, which also resolves the abbreviations.
+ * <p>
+ * Each node holds the characters of its edge, the first character of each child in a sorted array,
+ * and the value shared by all the names below it if there is only one. A lookup walks the
+ * characters of the token once, without hashing it nor creating a substring : it costs the length
+ * of the token (and a binary search among the children at each branch), whatever the number of names.
+ * A token which is a name gives its value, a token which is the prefix of names all associated to
+ * the same value (an option and its aliases) gives this value, any other prefix is ambiguous.
+ *
+ * @param <V> type of the values, two names with equal values are the same option
+ */
+final class OptionTrie<V> {
+    private static final char[] NO_FIRSTS = new char[0];
+
+    private static final class Node {
+        private final String label;
+        private final String key;
+        private final Object value;
+        private final char[] firsts;
+        private final Node[] children;
+        private final Object unique;
+
+        private Node(String label, String key, Object value, char[] firsts, Node[] children, Object unique) {
+            this.label = label;
+            this.key = key;
+            this.value = value;
+            this.firsts = firsts;
+            this.children = children;
+            this.unique = unique;
+        }
+    }
+
+    private final Node root;
+
+    private OptionTrie(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Build the trie from the given map, which is not kept
+     *
+     * @param byName
+     * @param <V>
+     * @return the immutable trie
+     */
+    static <V> OptionTrie<V> of(Map<String, ? extends V> byName) {
+        Objects.requireNonNull(byName);
+        var keys = byName.keySet().toArray(String[]::new);
+        Arrays.sort(keys);
+        if (keys.length == 0)
+            return new OptionTrie<>(new Node("", null, null, NO_FIRSTS, new Node[0], null));
+        return new OptionTrie<>(build(byName, keys, 0, keys.length, 0));
+    }
+
+    /**
+     * @param keys sorted
+     * @param from first key of the node
+     * @param to after the last key of the node
+     * @param start index of the first character of the edge of the node
+     */
+    private static Node build(Map<String, ?> byName, String[] keys, int from, int to, int start) {
+        var depth = start;
+        // the edge goes on while all the keys share the next character
+        while (keys[from].length() > depth && keys[to - 1].length() > depth && keys[from].charAt(depth) == keys[to - 1].charAt(depth)) {
+            depth++;
+        }
+        var label = keys[from].substring(start, depth);
+        String key = null;
+        Object value = null;
+        if (keys[from].length() == depth) {
+            key = keys[from];
+            value = byName.get(key);
+            from++;
+        }
+        var firsts = new StringBuilder();
+        var children = new ArrayList<Node>();
+        for (var i = from; i < to; ) {
+            var first = keys[i].charAt(depth);
+            var j = i + 1;
+            while (j < to && keys[j].charAt(depth) == first) {
+                j++;
+            }
+            firsts.append(first);
+            children.add(build(byName, keys, i, j, depth));
+            i = j;
+        }
+        var unique = value;
+        var shared = true;
+        for (var child : children) {
+            if (child.unique == null || (unique != null && !unique.equals(child.unique))) {
+                shared = false;
+                break;
+            }
+            unique = child.unique;
+        }
+        return new Node(label, key, value, firsts.toString().toCharArray(), children.toArray(Node[]::new), shared ? unique : null);
+    }
+
+    /**
+     * @param name
+     * @param start index of the first character of the token in name
+     * @param end index after the last character of the token in name
+     * @return the value of the name, or of the only option the name abbreviates,
+     * or null if no name starts with the token or if the token abbreviates several options,
+     * see {@link #candidates(CharSequence, int, int)}
+     */
+    @SuppressWarnings("unchecked")
+    V find(CharSequence name, int start, int end) {
+        Objects.requireNonNull(name);
+        Objects.checkFromToIndex(start, end, name.length());
+        var node = root;
+        var i = start;
+        for (;;) {
+            var label = node.label;
+            for (int j = 0; j < label.length(); j++, i++) {
+                if (i == end)
+                    return (V) node.unique;
+                if (name.charAt(i) != label.charAt(j))
+                    return null;
+            }
+            if (i == end)
+                return (V) (node.value != null ? node.value : node.unique);
+            var index = Arrays.binarySearch(node.firsts, name.charAt(i));
+            if (index < 0)
+                return null;
+            node = node.children[index];
+        }
+    }
+
+    /**
+     * @param name
+     * @param start index of the first character of the token in name
+     * @param end index after the last character of the token in name
+     * @return the names starting with the token, in order
+     */
+    List<String> candidates(CharSequence name, int start, int end) {
+        var candidates = new ArrayList<String>();
+        var node = nodeOf(name, start, end);
+        if (node != null)
+            collect(node, candidates);
+        return candidates;
+    }
+
+    /**
+     * @return true if a name starts with the characters {@code [start, end)} of name
+     */
+    boolean isPrefix(CharSequence name, int start, int end) {
+        return nodeOf(name, start, end) != null;
+    }
+
+    /**
+     * @return the node holding all the names starting with the token, or null if there is none
+     */
+    private Node nodeOf(CharSequence name, int start, int end) {
+        Objects.requireNonNull(name);
+        Objects.checkFromToIndex(start, end, name.length());
+        var node = root;
+        var i = start;
+        for (;;) {
+            var label = node.label;
+            for (int j = 0; j < label.length() && i < end; j++, i++) {
+                if (name.charAt(i) != label.charAt(j))
+                    return null;
+            }
+            if (i == end)
+                return node;
+            var index = Arrays.binarySearch(node.firsts, name.charAt(i));
+            if (index < 0)
+                return null;
+            node = node.children[index];
+        }
+    }
+
+    private static void collect(Node node, List<String> keys) {
+        if (node.key != null)
+            keys.add(node.key);
+        for (var child : node.children) {
+            collect(child, keys);
+        }
+    }
+}
@@ -39,16 +39,19 @@ public class PaintSettings {
         private int borderWidth = 10;
         private InetSocketAddress serv;
 
+        @CmdLineOption(value = "-window-name", required = true, doc = "Set the name of the graphic window")
         public PaintSettingsBuilder setWindowName(String windowName) {
             this.windowName = windowName;
             return this;
         }
 
+        @CmdLineOption(value = "-legacy", aliases = {"-l", "-lg"})
         public PaintSettingsBuilder setLegacy(boolean legacy) {
             this.legacy = legacy;
             return this;
         }
 
+        @CmdLineOption(value = "-no-borders", doc = "Set border to the drawing window")
         public PaintSettingsBuilder setBordered(boolean bordered) {
             this.bordered = bordered;
             return this;
@@ -64,11 +67,18 @@ public class PaintSettings {
             return this;
         }
 
+        @CmdLineOption("-border-width")
         public PaintSettingsBuilder setBorderWidth(int borderWidth) {
             this.borderWidth = borderWidth;
             return this;
         }
 
+        @CmdLineOption(value = "-min-size", required = true)
+        public PaintSettingsBuilder setMinSize(int windowWidth, int windowHeight) {
+            return setWindowWidth(windowWidth).setWindowHeight(windowHeight);
+        }
+
+        @CmdLineOption("-remote-server")
         public PaintSettingsBuilder setServ(InetSocketAddress serv) {
             Objects.requireNonNull(serv);
             this.serv = serv;
@@ -0,0 +1,101 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Read-only window over the arguments given to process, used as the parameters of an option.
+ * The arguments are kept as {@link CharSequence}s, an argument read from an argument file
+ * only becomes a String when {@link #get(int)} is called, the typed accessors parse it in place.
+ * A session owns one slice and moves it from an option to the next one, so the list given
+ * to an action is only valid during the call, an action which wants to keep it must copy it
+ * (with {@link java.util.List#copyOf(java.util.Collection)} for example).
+ */
+final class ParameterSlice extends AbstractList<String> implements RandomAccess {
+    private CharSequence[] arguments = new CharSequence[0];
+    private int offset;
+    private int length;
+
+    /**
+     * Move the window over the given arguments
+     *
+     * @param arguments
+     * @param offset index of the first parameter
+     * @param length number of parameters
+     */
+    void reset(CharSequence[] arguments, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, arguments.length);
+        this.arguments = arguments;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public String get(int index) {
+        return sequence(index).toString();
+    }
+
+    @Override
+    public int size() {
+        return length;
+    }
+
+    /**
+     * @param index
+     * @return the parameter at index, parsed as a decimal int
+     * @throws NumberFormatException if the parameter is not an int
+     */
+    int intAt(int index) {
+        var parameter = sequence(index);
+        return Integer.parseInt(parameter, 0, parameter.length(), 10);
+    }
+
+    /**
+     * @param index
+     * @return the parameter at index, parsed as a decimal long
+     * @throws NumberFormatException if the parameter is not a long
+     */
+    long longAt(int index) {
+        var parameter = sequence(index);
+        return Long.parseLong(parameter, 0, parameter.length(), 10);
+    }
+
+    /**
+     * @param index
+     * @return the parameter at index, parsed as a double
+     * @throws NumberFormatException if the parameter is not a double
+     */
+    double doubleAt(int index) {
+        return Double.parseDouble(sequence(index).toString());
+    }
+
+    /**
+     * @param index
+     * @return the parameter at index, "true" or "false" ignoring case
+     * @throws IllegalArgumentException if the parameter is not a boolean
+     */
+    boolean booleanAt(int index) {
+        var parameter = sequence(index);
+        if (equalsIgnoreCase(parameter, "true"))
+            return true;
+        if (equalsIgnoreCase(parameter, "false"))
+            return false;
+        throw new IllegalArgumentException(parameter + " is not a boolean");
+    }
+
+    private CharSequence sequence(int index) {
+        Objects.checkIndex(index, length);
+        return arguments[offset + index];
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence sequence, String value) {
+        if (sequence.length() != value.length())
+            return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.toLowerCase(sequence.charAt(i)) != value.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
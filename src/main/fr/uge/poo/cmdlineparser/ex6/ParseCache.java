@@ -0,0 +1,160 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the command lines validated by a compiled parser, the least recently used
+ * command line is evicted first. The key is the content of the argument vector; the option
+ * definitions are the ones of the compiled parser owning the cache, a registration compiles
+ * a new parser with an empty cache.
+ * <p>
+ * A hit does not lock : the line is read from a {@link ConcurrentHashMap} and stamped with
+ * {@link System#nanoTime()}. Only an insertion takes the lock. When the cache is full, it evicts the
+ * line with the oldest stamp among {@value #SAMPLES} lines taken from a random position, so a miss
+ * costs the same whatever the size of the cache. The eviction is exact for a cache of at most
+ * {@value #SAMPLES} lines, and approximates the least recently used line for a larger one.
+ */
+final class ParseCache {
+    /**
+     * The content of an argument vector, the array is not copied
+     */
+    private static final class Key {
+        private final String[] arguments;
+        private final int hash;
+
+        private Key(String[] arguments) {
+            this.arguments = arguments;
+            this.hash = Arrays.hashCode(arguments);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && hash == key.hash && Arrays.equals(arguments, key.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A validated command line and the time of its last access
+     */
+    private static final class Entry {
+        private final ParsedCommandLine line;
+        private volatile long lastAccess;
+
+        private Entry(ParsedCommandLine line, long lastAccess) {
+            this.line = line;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * Number of lines compared to choose the evicted one
+     */
+    private static final int SAMPLES = 8;
+
+    private final ConcurrentHashMap<Key, Entry> lines = new ConcurrentHashMap<>();
+    /**
+     * The keys of the lines, in no order, so the eviction can sample them; guarded by this
+     */
+    private final Key[] slots;
+    private int size;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize maximum number of command lines kept
+     */
+    ParseCache(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("The size of the cache should be positive");
+        this.slots = new Key[maxSize];
+    }
+
+    /**
+     * @param arguments
+     * @param parser parses the arguments if they are not in the cache
+     * @return the validated command line, from the cache or parsed
+     */
+    ParsedCommandLine get(String[] arguments, CompiledCmdLineParser parser) {
+        var line = lookup(arguments);
+        if (line == null) {
+            // the array of the caller may change after the call, the cache keeps its own copy
+            var copy = arguments.clone();
+            line = parser.parseInPlace(copy);
+            put(copy, line);
+        }
+        return line;
+    }
+
+    /**
+     * Count a hit or a miss
+     *
+     * @param arguments
+     * @return the validated command line, or null if the arguments are not in the cache
+     */
+    ParsedCommandLine lookup(String[] arguments) {
+        Objects.requireNonNull(arguments);
+        var entry = lines.get(new Key(arguments));
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        hits.increment();
+        return entry.line;
+    }
+
+    /**
+     * @param arguments the arguments of the line, which must not change anymore
+     * @param line validated from the arguments
+     */
+    void put(String[] arguments, ParsedCommandLine line) {
+        Objects.requireNonNull(line);
+        var key = new Key(arguments);
+        synchronized (this) {
+            // another thread may have validated the same line meanwhile
+            if (lines.containsKey(key))
+                return;
+            var slot = size < slots.length ? size++ : evict();
+            slots[slot] = key;
+            lines.put(key, new Entry(line, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Remove the line with the oldest stamp among {@link #SAMPLES} consecutive slots from a random one
+     *
+     * @return the slot of the removed line
+     */
+    private int evict() {
+        var samples = Math.min(SAMPLES, slots.length);
+        var start = ThreadLocalRandom.current().nextInt(slots.length);
+        var eldest = start;
+        var oldest = lines.get(slots[start]).lastAccess;
+        for (int i = 1; i < samples; i++) {
+            var slot = (start + i) % slots.length;
+            var lastAccess = lines.get(slots[slot]).lastAccess;
+            // the times of System.nanoTime are compared by their difference
+            if (lastAccess - oldest < 0) {
+                oldest = lastAccess;
+                eldest = slot;
+            }
+        }
+        lines.remove(slots[eldest]);
+        evictions.increment();
+        return eldest;
+    }
+
+    CompiledCmdLineParser.CacheStats stats() {
+        return new CompiledCmdLineParser.CacheStats(hits.sum(), misses.sum(), evictions.sum(), lines.size());
+    }
+}
@@ -0,0 +1,160 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Why a command line was rejected : the kind of the error, where it is and the options involved.
+ * The message is only formatted when it is asked for, rejecting a command line costs this object
+ * and the list of the options involved. It is serializable, so are the exceptions that carry it.
+ */
+public final class ParseError implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final ErrorCode code;
+    private final int tokenIndex;
+    private final String subject;
+    private final List<String> options;
+    private final Throwable cause;
+
+    private ParseError(ErrorCode code, int tokenIndex, String subject, List<String> options, Throwable cause) {
+        this.code = Objects.requireNonNull(code);
+        this.tokenIndex = tokenIndex;
+        this.subject = subject;
+        this.options = List.copyOf(options);
+        this.cause = cause;
+    }
+
+    static ParseError unknownOption(int tokenIndex, CharSequence name) {
+        return new ParseError(ErrorCode.UNKNOWN_OPTION, tokenIndex, name.toString(), List.of(), null);
+    }
+
+    static ParseError ambiguousOption(int tokenIndex, CharSequence prefix, List<String> candidates) {
+        return new ParseError(ErrorCode.AMBIGUOUS_OPTION, tokenIndex, prefix.toString(), candidates, null);
+    }
+
+    static ParseError missingParameters(int tokenIndex, String option) {
+        return new ParseError(ErrorCode.MISSING_PARAMETERS, tokenIndex, option, List.of(), null);
+    }
+
+    static ParseError unexpectedValue(int tokenIndex, String option) {
+        return new ParseError(ErrorCode.UNEXPECTED_VALUE, tokenIndex, option, List.of(), null);
+    }
+
+    static ParseError argumentFile(String message, Throwable cause) {
+        return new ParseError(ErrorCode.ARGUMENT_FILE, -1, message, List.of(), cause);
+    }
+
+    static ParseError conflict(int tokenIndex, String option, List<String> conflicting) {
+        return new ParseError(ErrorCode.CONFLICT, tokenIndex, option, conflicting, null);
+    }
+
+    static ParseError missingRequired(List<String> missing) {
+        return new ParseError(ErrorCode.MISSING_REQUIRED, -1, null, missing, null);
+    }
+
+    static ParseError missingRequirement(String option, List<String> missing) {
+        return new ParseError(ErrorCode.MISSING_REQUIREMENT, -1, option, missing, null);
+    }
+
+    /**
+     * @param rule "Exactly one of" or "At least one of"
+     * @param group the names of the options of the group
+     */
+    static ParseError group(String rule, List<String> group) {
+        return new ParseError(ErrorCode.GROUP, -1, rule, group, null);
+    }
+
+    static ParseError actionFailed(int tokenIndex, String option, Throwable cause) {
+        return new ParseError(ErrorCode.ACTION_FAILED, tokenIndex, option, List.of(), Objects.requireNonNull(cause));
+    }
+
+    /**
+     * @return the kind of the error
+     */
+    public ErrorCode code() {
+        return code;
+    }
+
+    /**
+     * @return the index of the token at fault in the arguments, argument files expanded,
+     * or -1 if the error is not about a token, like a missing required option
+     */
+    public int tokenIndex() {
+        return tokenIndex;
+    }
+
+    /**
+     * @return the unknown name or the ambiguous prefix, the option at fault, or the rule of a group;
+     * null for {@link ErrorCode#MISSING_REQUIRED}, the message for {@link ErrorCode#ARGUMENT_FILE}
+     */
+    public String subject() {
+        return subject;
+    }
+
+    /**
+     * @return the options involved : the candidates of an ambiguous prefix, the conflicting options,
+     * the missing required options or requirements, the options of a group
+     */
+    public List<String> options() {
+        return options;
+    }
+
+    /**
+     * @return the exception thrown by the action or while reading the argument file, if any
+     */
+    public Optional<Throwable> cause() {
+        return Optional.ofNullable(cause);
+    }
+
+    /**
+     * @return the message describing the error, formatted on each call
+     */
+    public String message() {
+        return switch (code) {
+            case UNKNOWN_OPTION -> "'" + subject + "' is not an option";
+            case AMBIGUOUS_OPTION -> "'" + subject + "' is ambiguous, it could be " + options;
+            case MISSING_PARAMETERS -> "The number of parameters and number of parameters given should be equals";
+            case UNEXPECTED_VALUE -> "Option " + subject + " does not take a parameter";
+            case ARGUMENT_FILE, OTHER -> subject;
+            case CONFLICT -> options.size() == 1
+                    ? "Option " + options.get(0) + " is in conflict with previously seen options"
+                    : "Options " + String.join(", ", options) + " are in conflict with previously seen options";
+            case MISSING_REQUIRED -> "A required option has not been used : " + String.join(", ", options);
+            case MISSING_REQUIREMENT -> "Option " + subject + " requires " + String.join(", ", options);
+            case GROUP -> subject + " " + options + " should be used";
+            case ACTION_FAILED -> "Error while applying option on parameters";
+        };
+    }
+
+    /**
+     * @return the exception thrown by the methods which do not return a {@link ParseResult}
+     */
+    RuntimeException exception() {
+        return switch (code) {
+            case UNKNOWN_OPTION, AMBIGUOUS_OPTION, MISSING_PARAMETERS, UNEXPECTED_VALUE, ARGUMENT_FILE -> new CmdLineArgumentException(this);
+            default -> new CmdLineStateException(this);
+        };
+    }
+
+    /**
+     * @param errors not empty
+     * @return the exception of the first error, the exceptions of the other errors are suppressed by it
+     */
+    static RuntimeException exception(List<ParseError> errors) {
+        var exception = errors.get(0).exception();
+        for (var error : errors.subList(1, errors.size())) {
+            exception.addSuppressed(error.exception());
+        }
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return code + (tokenIndex == -1 ? "" : " at " + tokenIndex) + ": " + message();
+    }
+}
@@ -0,0 +1,62 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * What {@link CompiledCmdLineParser#tryProcess(String[])} returns instead of throwing
+ */
+public sealed interface ParseResult {
+    /**
+     * The command line was accepted and its actions have run
+     *
+     * @param arguments the arguments which are not options
+     */
+    record Success(List<String> arguments) implements ParseResult {
+        public Success {
+            Objects.requireNonNull(arguments);
+        }
+    }
+
+    /**
+     * The command line was rejected, the actions before an action which failed have run,
+     * no action has run for the other errors
+     *
+     * @param errors the first error only, or all the errors found if they are all collected,
+     * see {@link CmdLineParser#enableAllErrors()}
+     */
+    record Failure(List<ParseError> errors) implements ParseResult {
+        public Failure {
+            errors = List.copyOf(errors);
+            if (errors.isEmpty())
+                throw new IllegalArgumentException("A failure should have an error");
+        }
+
+        public Failure(ParseError error) {
+            this(List.of(error));
+        }
+
+        /**
+         * @return the first error, in the order of the tokens
+         */
+        public ParseError error() {
+            return errors.get(0);
+        }
+    }
+
+    default boolean isSuccess() {
+        return this instanceof Success;
+    }
+
+    /**
+     * @return the arguments which are not options
+     * @throws IllegalArgumentException if the command line has been rejected because of the arguments
+     * @throws IllegalStateException if the command line has been rejected because of a rule or an action;
+     * the exception is the one of the first error, it suppresses the exceptions of the others
+     */
+    default List<String> orElseThrow() {
+        if (this instanceof Failure failure)
+            throw ParseError.exception(failure.errors);
+        return ((Success) this).arguments;
+    }
+}
@@ -0,0 +1,98 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The mutable state of one call to {@link CmdLineParser#process(String[])}.
+ * A new session is created for each call, so a parser whose options are registered
+ * can be shared between threads, the observers and the constraints only keep what was computed
+ * at registration and compilation.
+ */
+public final class ParseSession {
+    private final long[] seenOptions;
+    private final ArrayList<String> arguments = new ArrayList<>();
+    private final ParameterSlice parameters = new ParameterSlice();
+    private final TokenRange attachedValue = new TokenRange();
+    private int nbProcessed;
+    private int position = -1;
+
+    /**
+     * @param nbOptions number of canonical options of the compiled parser
+     */
+    ParseSession(int nbOptions) {
+        seenOptions = new long[Constraints.words(nbOptions)];
+    }
+
+    /**
+     * Mark the option as seen during this process
+     *
+     * @param ordinal the ordinal of the option in the compiled parser
+     */
+    void markSeen(int ordinal) {
+        Constraints.set(seenOptions, ordinal);
+        nbProcessed++;
+    }
+
+    /**
+     * Move to the next token of the arguments, when they are read from an iterator
+     */
+    void advance() {
+        position++;
+    }
+
+    /**
+     * @return index of the last token read from an iterator, argument files expanded
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * @return the number of options processed, an option used twice counts twice
+     */
+    int nbProcessed() {
+        return nbProcessed;
+    }
+
+    /**
+     * @return the options seen during this process, one bit per ordinal
+     */
+    long[] seenOptions() {
+        return seenOptions;
+    }
+
+    /**
+     * @param arguments the arguments given to process
+     * @param offset index of the first parameter of the current option
+     * @param length number of parameters of the current option
+     * @return the parameters of the current option, as a view valid until the next call
+     */
+    ParameterSlice parameters(CharSequence[] arguments, int offset, int length) {
+        parameters.reset(arguments, offset, length);
+        return parameters;
+    }
+
+    /**
+     * @param token
+     * @param start index of the first character of the value in the token
+     * @param end index after the last character of the value in the token
+     * @return the value attached to an option in the token, as a view valid until the next call
+     */
+    CharSequence attachedValue(CharSequence token, int start, int end) {
+        return attachedValue.reset(token, start, end);
+    }
+
+    void addArgument(String argument) {
+        Objects.requireNonNull(argument);
+        arguments.add(argument);
+    }
+
+    /**
+     * @return the arguments which are not options, in the order they were given
+     */
+    List<String> arguments() {
+        return arguments;
+    }
+}
@@ -0,0 +1,170 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A command line validated by {@link CompiledCmdLineParser#parse(String[])} whose actions have not run yet.
+ * <p>
+ * It only holds the tokens and int arrays : for each option found, its ordinal, the index of its token
+ * (its parameters are the tokens after it) and where its attached value starts in the token, if any;
+ * and the indexes of the tokens which are not options. Applying it with
+ * {@link CompiledCmdLineParser#apply(ParsedCommandLine)} runs the actions without looking up nor
+ * checking anything again. It is immutable and can be applied several times.
+ */
+public final class ParsedCommandLine {
+    private final CompiledCmdLineParser parser;
+    final CharSequence[] tokens;
+    final int size;
+    final int[] ordinals;
+    final int[] tokenIndexes;
+    final int[] attachedStarts;
+    final int[] argumentIndexes;
+
+    private ParsedCommandLine(CompiledCmdLineParser parser, CharSequence[] tokens, int size, int[] ordinals,
+                              int[] tokenIndexes, int[] attachedStarts, int[] argumentIndexes) {
+        this.parser = parser;
+        this.tokens = tokens;
+        this.size = size;
+        this.ordinals = ordinals;
+        this.tokenIndexes = tokenIndexes;
+        this.attachedStarts = attachedStarts;
+        this.argumentIndexes = argumentIndexes;
+    }
+
+    /**
+     * @param parser
+     * @return true if the command line was parsed by the parser, so its ordinals are the ones of the parser
+     */
+    boolean isParsedBy(CompiledCmdLineParser parser) {
+        return this.parser == parser;
+    }
+
+    /**
+     * @return the number of options found on the command line
+     */
+    public int nbOptions() {
+        return size;
+    }
+
+    /**
+     * @return the arguments which are not options, in order
+     */
+    public List<String> arguments() {
+        return Arrays.stream(argumentIndexes).mapToObj(index -> tokens[index].toString()).toList();
+    }
+
+    @Override
+    public String toString() {
+        return "ParsedCommandLine[" + size + " options, " + argumentIndexes.length + " arguments]";
+    }
+
+    /**
+     * Records the matches while the command line is validated
+     */
+    static final class Builder {
+        private final CompiledCmdLineParser parser;
+        private final CharSequence[] tokens;
+        private int size;
+        private int[] ordinals = new int[8];
+        private int[] tokenIndexes = new int[8];
+        private int[] attachedStarts = new int[8];
+        private int nbArguments;
+        private int[] argumentIndexes = new int[8];
+        private final boolean allErrors;
+        private ParseError error;
+        private ArrayList<ParseError> errors;
+
+        /**
+         * @param parser
+         * @param tokens
+         * @param allErrors true to collect all the errors, false to stop at the first one
+         */
+        Builder(CompiledCmdLineParser parser, CharSequence[] tokens, boolean allErrors) {
+            this.parser = Objects.requireNonNull(parser);
+            this.tokens = Objects.requireNonNull(tokens);
+            this.allErrors = allErrors;
+        }
+
+        /**
+         * @param ordinal ordinal of the option
+         * @param tokenIndex index of the token of the option, its parameters are the next tokens
+         * @param attachedStart index in the token of the value attached to the option, or -1
+         */
+        void addOption(int ordinal, int tokenIndex, int attachedStart) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size << 1);
+                tokenIndexes = Arrays.copyOf(tokenIndexes, size << 1);
+                attachedStarts = Arrays.copyOf(attachedStarts, size << 1);
+            }
+            ordinals[size] = ordinal;
+            tokenIndexes[size] = tokenIndex;
+            attachedStarts[size] = attachedStart;
+            size++;
+        }
+
+        void addArgument(int tokenIndex) {
+            if (nbArguments == argumentIndexes.length)
+                argumentIndexes = Arrays.copyOf(argumentIndexes, nbArguments << 1);
+            argumentIndexes[nbArguments++] = tokenIndex;
+        }
+
+        CharSequence[] tokens() {
+            return tokens;
+        }
+
+        /**
+         * Reject the command line, only the first error is kept unless all the errors are collected
+         *
+         * @param error
+         */
+        void fail(ParseError error) {
+            Objects.requireNonNull(error);
+            if (this.error == null) {
+                this.error = error;
+                return;
+            }
+            if (allErrors) {
+                if (errors == null) {
+                    errors = new ArrayList<>();
+                    errors.add(this.error);
+                }
+                errors.add(error);
+            }
+        }
+
+        boolean allErrors() {
+            return allErrors;
+        }
+
+        /**
+         * @return true if the command line has failed and the validation should stop
+         */
+        boolean stopped() {
+            return error != null && !allErrors;
+        }
+
+        /**
+         * @return the first reason why the command line was rejected, or null
+         */
+        ParseError error() {
+            return error;
+        }
+
+        /**
+         * @return all the reasons why the command line was rejected, in the order they were found
+         */
+        List<ParseError> errors() {
+            if (errors != null)
+                return List.copyOf(errors);
+            return error == null ? List.of() : List.of(error);
+        }
+
+        ParsedCommandLine build() {
+            return new ParsedCommandLine(parser, tokens, size, ordinals, tokenIndexes, attachedStarts,
+                    Arrays.copyOf(argumentIndexes, nbArguments));
+        }
+    }
+}
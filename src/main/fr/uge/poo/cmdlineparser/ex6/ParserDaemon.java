@@ -0,0 +1,416 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import jdk.net.ExtendedSocketOptions;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-lived JVM running a command for the clients connected to a Unix domain socket,
+ * so a short invocation does not pay the JVM startup nor the JIT warm-up.
+ * <p>
+ * A client sends its arguments, its working directory and its environment, the daemon gives them
+ * to the command and streams back what it writes on its output and error streams, then the exit code.
+ * Each client is handled by its own thread, a virtual thread when the runtime provides them.
+ * <p>
+ * The protocol is text encoded in UTF-8, so a client does not need a JVM, see {@code bin/paint-client}
+ * which only needs bash and socat; {@link DaemonClient} is the client for code already running in a JVM.
+ * <ul>
+ *     <li>The request is a list of fields, each one ended by a NUL byte. The first character of a field
+ *     is its kind : {@code D} the working directory, {@code E} a variable of the environment as
+ *     {@code NAME=value}, {@code A} an argument, the arguments in order. An empty field ends the request.</li>
+ *     <li>The response is a list of lines ended by {@code \n} : {@code out } or {@code err } followed by
+ *     a line written by the command on its output or error stream, then {@code exit } followed by the
+ *     exit code, then the daemon closes the connection. A last line written without its {@code \n}
+ *     is sent with one.</li>
+ * </ul>
+ * <p>
+ * Only the user running the daemon can use it : the socket file is readable and writable by its owner
+ * only, and a client connected by another user is closed without running anything.
+ */
+public final class ParserDaemon implements Closeable {
+    static final char WORKING_DIRECTORY = 'D';
+    static final char VARIABLE = 'E';
+    static final char ARGUMENT = 'A';
+    static final String OUT = "out ";
+    static final String ERR = "err ";
+    static final String EXIT = "exit ";
+
+    /**
+     * Environment variable holding options given before the arguments of each invocation, see {@link #paint}
+     */
+    static final String OPTIONS_VARIABLE = "PAINT_OPTIONS";
+
+    /**
+     * What a client asks the daemon to run
+     *
+     * @param arguments the arguments of the client
+     * @param workingDirectory the working directory of the client
+     * @param environment the environment of the client
+     */
+    public record Invocation(List<String> arguments, Path workingDirectory, Map<String, String> environment) {
+        public Invocation {
+            arguments = List.copyOf(arguments);
+            Objects.requireNonNull(workingDirectory);
+            environment = Map.copyOf(environment);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Command {
+        /**
+         * Run the command for a client, concurrently with the other clients
+         *
+         * @param invocation
+         * @param out sent to the output stream of the client
+         * @param err sent to the error stream of the client
+         * @return the exit code of the client
+         */
+        int run(Invocation invocation, PrintStream out, PrintStream err);
+    }
+
+    private final Path socket;
+    private final Command command;
+    private final ServerSocketChannel server;
+    private final UserPrincipal owner;
+    private final ExecutorService executor = newThreadPerTaskExecutor();
+
+    /**
+     * Bind the socket, the socket of a previous daemon which is not running anymore is replaced
+     *
+     * @param socket path of the socket file
+     * @param command run for each client
+     * @throws IOException if the socket can not be bound
+     * @throws IllegalStateException if the path exists and is not a socket, or a daemon still listens on it
+     */
+    public ParserDaemon(Path socket, Command command) throws IOException {
+        this.socket = Objects.requireNonNull(socket);
+        this.command = Objects.requireNonNull(command);
+        removeStaleSocket(socket);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            // the socket is created with the umask, the clients of other users are also rejected by handle
+            if (socket.getFileSystem().supportedFileAttributeViews().contains("posix"))
+                Files.setPosixFilePermissions(socket, EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+            owner = Files.getOwner(socket);
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Delete the socket left by a daemon which has stopped without closing it
+     */
+    private static void removeStaleSocket(Path socket) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(socket, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        // a socket is neither a regular file, a directory nor a link
+        if (!attributes.isOther())
+            throw new IllegalStateException(socket + " exists and is not a socket");
+        var channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (ConnectException e) {
+            Files.delete(socket);
+            return;
+        } finally {
+            channel.close();
+        }
+        throw new IllegalStateException("A daemon is already listening on " + socket);
+    }
+
+    /**
+     * @return true if the client runs as the user of the daemon, or if the peer can not be known
+     */
+    private boolean isOwner(SocketChannel client) throws IOException {
+        try {
+            return client.getOption(ExtendedSocketOptions.SO_PEERCRED).user().equals(owner);
+        } catch (UnsupportedOperationException e) {
+            // the permissions of the socket file still apply
+            return true;
+        }
+    }
+
+    /**
+     * Accept the clients until the daemon is closed
+     *
+     * @throws IOException if the socket fails
+     */
+    public void serve() throws IOException {
+        while (server.isOpen()) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (IOException e) {
+                if (!server.isOpen())
+                    return;
+                throw e;
+            }
+            executor.execute(() -> handle(client));
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (client;
+             var input = new BufferedInputStream(Channels.newInputStream(client));
+             var output = new BufferedOutputStream(Channels.newOutputStream(client))) {
+            if (!isOwner(client))
+                return;
+            var invocation = readInvocation(input);
+            var outLines = new LineOutputStream(output, OUT);
+            var errLines = new LineOutputStream(output, ERR);
+            var out = new PrintStream(outLines, true, StandardCharsets.UTF_8);
+            var err = new PrintStream(errLines, true, StandardCharsets.UTF_8);
+            int exitCode;
+            try {
+                exitCode = command.run(invocation, out, err);
+            } catch (RuntimeException e) {
+                err.println(e.getMessage());
+                exitCode = 1;
+            }
+            out.flush();
+            err.flush();
+            outLines.finish();
+            errLines.finish();
+            synchronized (output) {
+                output.write((EXIT + exitCode + "\n").getBytes(StandardCharsets.UTF_8));
+                output.flush();
+            }
+        } catch (IOException e) {
+            // the client is gone or did not follow the protocol, nothing to answer
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        executor.shutdown();
+        Files.deleteIfExists(socket);
+    }
+
+    /**
+     * @return the bytes read until the delimiter, which is consumed, or null if the input is already at its end
+     * @throws EOFException if the input ends before the delimiter
+     */
+    static String readUntil(InputStream input, int delimiter) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        for (int b; (b = input.read()) != delimiter; ) {
+            if (b == -1) {
+                if (bytes.size() == 0)
+                    return null;
+                throw new EOFException("Truncated at " + bytes.toString(StandardCharsets.UTF_8));
+            }
+            bytes.write(b);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void writeField(OutputStream output, char kind, String value) throws IOException {
+        if (value.indexOf('\0') != -1)
+            throw new IllegalArgumentException("A field can not contain a NUL character " + value);
+        output.write((kind + value + '\0').getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write the request of the invocation, see the protocol of {@link ParserDaemon}
+     *
+     * @throws IllegalArgumentException if a string of the invocation contains a NUL character
+     */
+    static void writeInvocation(OutputStream output, Invocation invocation) throws IOException {
+        writeField(output, WORKING_DIRECTORY, invocation.workingDirectory().toString());
+        for (var entry : invocation.environment().entrySet()) {
+            writeField(output, VARIABLE, entry.getKey() + '=' + entry.getValue());
+        }
+        for (var argument : invocation.arguments()) {
+            writeField(output, ARGUMENT, argument);
+        }
+        output.write(0);
+        output.flush();
+    }
+
+    static Invocation readInvocation(InputStream input) throws IOException {
+        String workingDirectory = null;
+        var arguments = new ArrayList<String>();
+        var environment = new HashMap<String, String>();
+        for (;;) {
+            var field = readUntil(input, 0);
+            if (field == null)
+                throw new EOFException("The request is not ended by an empty field");
+            if (field.isEmpty())
+                break;
+            var value = field.substring(1);
+            switch (field.charAt(0)) {
+                case WORKING_DIRECTORY -> workingDirectory = value;
+                case VARIABLE -> {
+                    var equal = value.indexOf('=');
+                    if (equal <= 0)
+                        throw new IOException("Invalid variable " + value);
+                    environment.put(value.substring(0, equal), value.substring(equal + 1));
+                }
+                case ARGUMENT -> arguments.add(value);
+                default -> throw new IOException("Unknown field " + field);
+            }
+        }
+        if (workingDirectory == null)
+            throw new IOException("The request has no working directory");
+        try {
+            return new Invocation(arguments, Path.of(workingDirectory), environment);
+        } catch (InvalidPathException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Send each line written to the stream as a line of the response starting with a prefix.
+     * Both streams of a client share the socket, a line is written at once.
+     */
+    private static final class LineOutputStream extends OutputStream {
+        private final OutputStream output;
+        private final byte[] prefix;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        private LineOutputStream(OutputStream output, String prefix) {
+            this.output = output;
+            this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (b == '\n') {
+                sendLine();
+            } else {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            Objects.checkFromIndexSize(offset, length, bytes.length);
+            var start = offset;
+            for (int i = offset; i < offset + length; i++) {
+                if (bytes[i] == '\n') {
+                    line.write(bytes, start, i - start);
+                    sendLine();
+                    start = i + 1;
+                }
+            }
+            line.write(bytes, start, offset + length - start);
+        }
+
+        private void sendLine() throws IOException {
+            synchronized (output) {
+                output.write(prefix);
+                line.writeTo(output);
+                output.write('\n');
+            }
+            line.reset();
+        }
+
+        /**
+         * Send the last line if it has no {@code \n}
+         */
+        private void finish() throws IOException {
+            if (line.size() != 0)
+                sendLine();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (output) {
+                output.flush();
+            }
+        }
+    }
+
+    /**
+     * A virtual thread per client if the runtime has them (Java 21, or 19 with preview enabled),
+     * otherwise a platform thread per client, reused between clients
+     */
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            var factory = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+            return (ExecutorService) factory.invokeExact();
+        } catch (NoSuchMethodException | IllegalAccessException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool();
+        } catch (Throwable e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Parse the arguments of a client into paint settings and print them, the command served by {@link #main(String[])}.
+     * Each invocation registers its own parser filling its own settings, so the invocations share nothing.
+     * The options of the variable {@value #OPTIONS_VARIABLE} of the environment of the client, separated
+     * by spaces, come before its arguments; the files are resolved against its working directory.
+     *
+     * @param invocation
+     * @param out receives the files and the settings
+     * @param err receives the error if the arguments are rejected
+     * @return the exit code, 0 on success
+     */
+    static int paint(Invocation invocation, PrintStream out, PrintStream err) {
+        var arguments = new ArrayList<String>();
+        var options = invocation.environment().getOrDefault(OPTIONS_VARIABLE, "").strip();
+        if (!options.isEmpty())
+            arguments.addAll(List.of(options.split("\\s+")));
+        arguments.addAll(invocation.arguments());
+        var optionsBuilder = new PaintSettings.PaintSettingsBuilder();
+        var cmdLineParser = Application.createCmdLineParser(optionsBuilder);
+        try {
+            var files = cmdLineParser.process(arguments.toArray(String[]::new));
+            files.forEach(file -> out.println(invocation.workingDirectory().resolve(file)));
+            out.println(optionsBuilder.build());
+            return 0;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            err.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Serve {@link #paint(Invocation, PrintStream, PrintStream)} on the socket given as first argument
+     *
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: ParserDaemon <socket path>");
+            System.exit(2);
+        }
+        try (var daemon = new ParserDaemon(Path.of(args[0]), ParserDaemon::paint)) {
+            daemon.serve();
+        }
+    }
+}
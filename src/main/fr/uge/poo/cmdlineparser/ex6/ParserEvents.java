@@ -0,0 +1,81 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Flight Recorder events of the parser, under the category "Command Line Parser".
+ * <p>
+ * They are only recorded while a recording is running, for instance after
+ * {@code jcmd <pid> JFR.start}. Outside a recording an event is a dead object the JIT removes,
+ * {@link Event#shouldCommit()} being false, so they cost nothing and are always compiled in.
+ */
+final class ParserEvents {
+    private static final String CATEGORY = "Command Line Parser";
+
+    private ParserEvents() {
+        throw new AssertionError();
+    }
+
+    @Name("fr.uge.poo.cmdlineparser.Process")
+    @Label("Process")
+    @Category(CATEGORY)
+    @Description("A call to process, from the first token to the last check")
+    @StackTrace(false)
+    static final class ProcessEvent extends Event {
+        @Label("Token Count")
+        @Description("Number of tokens given, before the argument files are expanded")
+        int tokenCount;
+
+        @Label("Option Count")
+        @Description("Number of options processed")
+        int optionCount;
+
+        @Label("Outcome")
+        @Description("SUCCESS, or the error code of the failure")
+        String outcome;
+    }
+
+    @Name("fr.uge.poo.cmdlineparser.Action")
+    @Label("Option Action")
+    @Category(CATEGORY)
+    @Description("The action of an option applied on its parameters")
+    @StackTrace(false)
+    static final class ActionEvent extends Event {
+        @Label("Option")
+        String option;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("fr.uge.poo.cmdlineparser.Validation")
+    @Label("Validation")
+    @Category(CATEGORY)
+    @Description("A check of the rules between the options")
+    @StackTrace(false)
+    static final class ValidationEvent extends Event {
+        /**
+         * Checked each time an option with conflicts is processed
+         */
+        static final String CONFLICTS = "conflicts";
+        /**
+         * Checked at the end of a process : required options, requirements and groups
+         */
+        static final String REQUIRED = "required";
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Option")
+        @Description("The option processed, for the conflicts")
+        String option;
+
+        @Label("Passed")
+        boolean passed;
+    }
+}
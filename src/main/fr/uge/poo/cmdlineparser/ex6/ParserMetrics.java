@@ -0,0 +1,259 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a parser, see {@link CmdLineParser#enableMetrics()}.
+ * <p>
+ * Recording only increments {@link LongAdder}s, which spread the contention between threads
+ * instead of making them retry on a single word : no lock, no allocation once an option has its counter.
+ * The durations of process are counted in a histogram whose bucket {@code i} holds the durations
+ * up to {@code 2^(8+i)} nanoseconds, from 256 ns to about 17 s, the bucket is found with a count
+ * of leading zeros. The reads are not atomic across counters, each value is exact but a snapshot
+ * taken while the parser runs may count a call in one counter and not yet in another.
+ */
+public final class ParserMetrics implements ParserMetricsMXBean {
+    private static final int MIN_SHIFT = 8;
+    private static final int NB_BOUNDED_BUCKETS = 27;
+
+    private final ConcurrentHashMap<String, LongAdder> optionCounts = new ConcurrentHashMap<>();
+    private final LongAdder[] failureCounts = newAdders(ErrorCode.values().length);
+    private final LongAdder[] latencyBuckets = newAdders(NB_BOUNDED_BUCKETS + 1);
+    private final LongAdder latencySum = new LongAdder();
+
+    private static LongAdder[] newAdders(int length) {
+        var adders = new LongAdder[length];
+        Arrays.setAll(adders, i -> new LongAdder());
+        return adders;
+    }
+
+    /**
+     * @param index of a bucket
+     * @return the largest duration in nanoseconds counted by the bucket, {@link Long#MAX_VALUE} for the last one
+     */
+    private static long upperBound(int index) {
+        return index == NB_BOUNDED_BUCKETS ? Long.MAX_VALUE : 1L << (MIN_SHIFT + index);
+    }
+
+    private static int bucketOf(long nanos) {
+        // ceil(log2(nanos)), so a bucket holds the durations up to its bound included
+        var log2 = 64 - Long.numberOfLeadingZeros(Math.max(nanos, 1) - 1);
+        return Math.min(Math.max(log2 - MIN_SHIFT, 0), NB_BOUNDED_BUCKETS);
+    }
+
+    /**
+     * Create the counter of an option, so it is reported even if the option is never used
+     *
+     * @param name canonical name of the option
+     */
+    void register(String name) {
+        optionCounts.putIfAbsent(name, new LongAdder());
+    }
+
+    /**
+     * @param name canonical name of the option
+     */
+    void recordOption(String name) {
+        var counter = optionCounts.get(name);
+        if (counter == null)
+            counter = optionCounts.computeIfAbsent(name, __ -> new LongAdder());
+        counter.increment();
+    }
+
+    /**
+     * @param nanos duration of a process
+     */
+    void recordProcess(long nanos) {
+        latencyBuckets[bucketOf(nanos)].increment();
+        latencySum.add(nanos);
+    }
+
+    /**
+     * @param code why the process failed
+     * @param nanos duration of the process until it failed
+     */
+    void recordFailure(ErrorCode code, long nanos) {
+        failureCounts[code.ordinal()].increment();
+        recordProcess(nanos);
+    }
+
+    @Override
+    public long getProcessCount() {
+        var count = 0L;
+        for (var bucket : latencyBuckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public long getFailureCount() {
+        var count = 0L;
+        for (var failures : failureCounts) {
+            count += failures.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @param code
+     * @return number of calls to process which failed with the code
+     */
+    public long failureCount(ErrorCode code) {
+        Objects.requireNonNull(code);
+        return failureCounts[code.ordinal()].sum();
+    }
+
+    /**
+     * @return number of failures by code, the codes which never happened are absent
+     */
+    public Map<ErrorCode, Long> failureCounts() {
+        var counts = new EnumMap<ErrorCode, Long>(ErrorCode.class);
+        for (var code : ErrorCode.values()) {
+            var count = failureCounts[code.ordinal()].sum();
+            if (count != 0)
+                counts.put(code, count);
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getFailureCounts() {
+        var counts = new LinkedHashMap<String, Long>();
+        failureCounts().forEach((code, count) -> counts.put(code.name(), count));
+        return counts;
+    }
+
+    /**
+     * @param name canonical name of the option
+     * @return number of times the option has been processed
+     */
+    public long optionCount(String name) {
+        Objects.requireNonNull(name);
+        var counter = optionCounts.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    @Override
+    public Map<String, Long> getOptionCounts() {
+        var counts = new TreeMap<String, Long>();
+        optionCounts.forEach((name, counter) -> counts.put(name, counter.sum()));
+        return counts;
+    }
+
+    @Override
+    public double getMeanLatencyNanos() {
+        var count = getProcessCount();
+        return count == 0 ? 0 : (double) latencySum.sum() / count;
+    }
+
+    @Override
+    public Map<Long, Long> getLatencyHistogram() {
+        var histogram = new LinkedHashMap<Long, Long>();
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            histogram.put(upperBound(i), latencyBuckets[i].sum());
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getLatencyQuantileNanos(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1))
+            throw new IllegalArgumentException("The quantile should be between 0 and 1");
+        var counts = Arrays.stream(latencyBuckets).mapToLong(LongAdder::sum).toArray();
+        var total = Arrays.stream(counts).sum();
+        if (total == 0)
+            return 0;
+        var rank = Math.max(1, (long) Math.ceil(quantile * total));
+        var seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return upperBound(i);
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Render the counters in the Prometheus text exposition format (version 0.0.4)
+     *
+     * @return the text, one sample per line
+     */
+    public String prometheusText() {
+        var text = new StringBuilder();
+        text.append("# HELP cmdlineparser_process_total Number of command lines processed.\n")
+                .append("# TYPE cmdlineparser_process_total counter\n")
+                .append("cmdlineparser_process_total ").append(getProcessCount()).append('\n');
+        text.append("# HELP cmdlineparser_failures_total Number of command lines rejected, by error code.\n")
+                .append("# TYPE cmdlineparser_failures_total counter\n");
+        for (var code : ErrorCode.values()) {
+            text.append("cmdlineparser_failures_total{code=\"").append(code.name()).append("\"} ")
+                    .append(failureCounts[code.ordinal()].sum()).append('\n');
+        }
+        text.append("# HELP cmdlineparser_option_total Number of times an option has been processed.\n")
+                .append("# TYPE cmdlineparser_option_total counter\n");
+        getOptionCounts().forEach((name, count) -> {
+            text.append("cmdlineparser_option_total{option=\"");
+            escape(name, text);
+            text.append("\"} ").append(count).append('\n');
+        });
+        text.append("# HELP cmdlineparser_process_duration_seconds Duration of process.\n")
+                .append("# TYPE cmdlineparser_process_duration_seconds histogram\n");
+        var cumulated = 0L;
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            cumulated += latencyBuckets[i].sum();
+            var bound = i == NB_BOUNDED_BUCKETS ? "+Inf" : Double.toString(upperBound(i) / 1e9);
+            text.append("cmdlineparser_process_duration_seconds_bucket{le=\"").append(bound).append("\"} ")
+                    .append(cumulated).append('\n');
+        }
+        text.append("cmdlineparser_process_duration_seconds_sum ").append(latencySum.sum() / 1e9).append('\n')
+                .append("cmdlineparser_process_duration_seconds_count ").append(cumulated).append('\n');
+        return text.toString();
+    }
+
+    private static void escape(String value, StringBuilder text) {
+        for (int i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '\\' -> text.append("\\\\");
+                case '"' -> text.append("\\\"");
+                case '\n' -> text.append("\\n");
+                default -> text.append(c);
+            }
+        }
+    }
+
+    /**
+     * Publish the counters in the platform MBean server, under
+     * {@code fr.uge.poo.cmdlineparser:type=ParserMetrics,name="<name>"}
+     *
+     * @param name distinguishes the parsers of the application
+     * @return the name of the MBean, to unregister it
+     * @throws IllegalStateException if the MBean can not be registered, for instance if the name is already used
+     */
+    public ObjectName registerMBean(String name) {
+        Objects.requireNonNull(name);
+        try {
+            var objectName = new ObjectName("fr.uge.poo.cmdlineparser:type=ParserMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("The metrics can not be registered as " + name, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ParserMetrics[" + getProcessCount() + " processed, " + getFailureCount() + " failed]";
+    }
+}
@@ -0,0 +1,45 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.util.Map;
+
+/**
+ * The view of {@link ParserMetrics} published through JMX, see {@link ParserMetrics#registerMBean(String)}
+ */
+public interface ParserMetricsMXBean {
+    /**
+     * @return number of calls to process, successful or not
+     */
+    long getProcessCount();
+
+    /**
+     * @return number of calls to process which failed
+     */
+    long getFailureCount();
+
+    /**
+     * @return number of failures by {@link ErrorCode}, the codes which never happened are absent
+     */
+    Map<String, Long> getFailureCounts();
+
+    /**
+     * @return number of times each option has been processed, by canonical name
+     */
+    Map<String, Long> getOptionCounts();
+
+    /**
+     * @return mean duration of process in nanoseconds, 0 if it was never called
+     */
+    double getMeanLatencyNanos();
+
+    /**
+     * @return number of calls to process by upper bound of their duration in nanoseconds,
+     * the calls longer than the last bound are counted under {@link Long#MAX_VALUE}
+     */
+    Map<Long, Long> getLatencyHistogram();
+
+    /**
+     * @param quantile between 0 and 1
+     * @return upper bound in nanoseconds of the histogram bucket holding the quantile, 0 if process was never called
+     */
+    long getLatencyQuantileNanos(double quantile);
+}
@@ -0,0 +1,53 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import java.util.Objects;
+
+/**
+ * A mutable view over the characters {@code [start, end)} of a token, used for the values attached
+ * to an option ({@code -w4}, {@code --border-width=4}) so they are read in place. The typed accessors
+ * of {@link ParameterSlice} parse the view directly, a String is only created by {@link #toString()}.
+ * A session owns one view and moves it from a token to the next one.
+ */
+final class TokenRange implements CharSequence {
+    private CharSequence token = "";
+    private int start;
+    private int end;
+
+    /**
+     * Move the view over the given characters
+     *
+     * @param token
+     * @param start index of the first character
+     * @param end index after the last character
+     * @return this view
+     */
+    TokenRange reset(CharSequence token, int start, int end) {
+        Objects.checkFromToIndex(start, end, token.length());
+        this.token = token;
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        Objects.checkIndex(index, end - start);
+        return token.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, this.end - this.start);
+        return token.subSequence(this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString() {
+        return token.subSequence(start, end).toString();
+    }
+}
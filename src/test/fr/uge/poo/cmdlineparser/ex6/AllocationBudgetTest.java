@@ -0,0 +1,159 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import fr.uge.poo.cmdlineparser.ex6.CmdLineParser.Option.OptionsBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Bytes allocated by one call to process, measured on the current thread once the call is warmed up.
+ * Each scenario declares its budget, a test fails if the average allocation of a call goes over it.
+ * The budgets are about twice what a call allocates on JDK 17, so they catch a new allocation
+ * per token or per option, not a few bytes. A registration recompiles the parser, so the options
+ * are all registered before the measure.
+ */
+class AllocationBudgetTest {
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 10_000;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private final CmdLineParser cmdLineParser = new CmdLineParser();
+    private int sum;
+
+    @BeforeAll
+    public static void threadAllocatedBytesShouldBeSupported() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * @param call the result is used, so the call can not be removed by the JIT
+     * @return the average number of bytes allocated by one call
+     */
+    private long bytesPerCall(Supplier<?> call) {
+        for (int i = 0; i < WARMUP; i++) {
+            sum += call.get().hashCode();
+        }
+        var thread = Thread.currentThread().getId();
+        var before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ITERATIONS; i++) {
+            sum += call.get().hashCode();
+        }
+        return (threads.getThreadAllocatedBytes(thread) - before) / ITERATIONS;
+    }
+
+    private void assertWithinBudget(long budget, Supplier<?> call) {
+        var bytes = bytesPerCall(call);
+        assertTrue(bytes <= budget, () -> bytes + " bytes allocated per call, the budget is " + budget);
+    }
+
+    private void registerPaintOptions() {
+        cmdLineParser.addFlag("-legacy", () -> sum++);
+        cmdLineParser.addFlag("-with-borders", () -> sum++);
+        cmdLineParser.addOption(new OptionsBuilder("-border-width", 1).setIntConsumer(width -> sum += width).build());
+        cmdLineParser.addOption(new OptionsBuilder("-window-name", 1, params -> sum += params.get(0).length()).build());
+        cmdLineParser.addOption(new OptionsBuilder("-min-size", 2, params -> sum += params.size()).build());
+    }
+
+    private static final String[] PAINT_ARGUMENTS = {
+            "-legacy", "file1", "-border-width", "4", "-window-name", "paint", "-min-size", "600", "400", "file2"
+    };
+
+    @Test
+    public void flagsOnlyShouldAllocateAlmostNothing() {
+        cmdLineParser.addFlag("-a", () -> sum++);
+        cmdLineParser.addFlag("-b", () -> sum++);
+        var arguments = new String[]{"-a", "-b"};
+        assertWithinBudget(512, () -> cmdLineParser.process(arguments));
+    }
+
+    @Test
+    public void optionsWithParameters() {
+        registerPaintOptions();
+        assertWithinBudget(1_024, () -> cmdLineParser.process(PAINT_ARGUMENTS));
+    }
+
+    @Test
+    public void manyRegisteredOptionsShouldNotCostMore() {
+        registerPaintOptions();
+        IntStream.range(0, 1_000).forEach(i -> cmdLineParser.addFlag("-option" + i, () -> sum++));
+        assertWithinBudget(1_024, () -> cmdLineParser.process(PAINT_ARGUMENTS));
+    }
+
+    @Test
+    public void longCommandLine() {
+        IntStream.range(0, 100).forEach(i -> cmdLineParser.addOption(new OptionsBuilder("-option" + i, 1, params -> sum++).build()));
+        var arguments = IntStream.range(0, 100).boxed()
+                .flatMap(i -> Stream.of("-option" + i, "value" + i))
+                .toArray(String[]::new);
+        assertEquals(List.of(), cmdLineParser.process(arguments));
+        // 4_248 bytes measured, the ActionEvent of each action, or about 200 when the JIT removes them
+        assertWithinBudget(5_120, () -> cmdLineParser.process(arguments));
+    }
+
+    @Test
+    public void gnuSyntax() {
+        registerPaintOptions();
+        cmdLineParser.addFlag("-x", () -> sum++);
+        cmdLineParser.addFlag("-y", () -> sum++);
+        cmdLineParser.addOption(new OptionsBuilder("-w", 1).setIntConsumer(width -> sum += width).build());
+        cmdLineParser.addOption(new OptionsBuilder("--name", 1, params -> sum += params.get(0).length()).build());
+        cmdLineParser.enableGnuSyntax();
+        var arguments = new String[]{"-xyw4", "--name=paint", "file", "--", "-legacy"};
+        assertWithinBudget(1_024, () -> cmdLineParser.process(arguments));
+    }
+
+    @Test
+    public void abbreviations() {
+        registerPaintOptions();
+        cmdLineParser.enableAbbreviations();
+        var arguments = new String[]{"-leg", "-border", "4", "-win", "paint", "file"};
+        assertWithinBudget(1_024, () -> cmdLineParser.process(arguments));
+    }
+
+    @Test
+    public void parseCacheHit() {
+        registerPaintOptions();
+        cmdLineParser.enableParseCache(16);
+        assertWithinBudget(1_024, () -> cmdLineParser.process(PAINT_ARGUMENTS));
+    }
+
+    @Test
+    public void tryProcess() {
+        registerPaintOptions();
+        assertWithinBudget(2_048, () -> cmdLineParser.tryProcess(PAINT_ARGUMENTS));
+    }
+
+    @Test
+    public void applyParsedCommandLine() {
+        registerPaintOptions();
+        var line = cmdLineParser.parse(PAINT_ARGUMENTS);
+        assertWithinBudget(1_024, () -> cmdLineParser.apply(line));
+    }
+
+    @Test
+    public void rejectedCommandLine() {
+        registerPaintOptions();
+        var arguments = new String[]{"-legacy", "-unknown"};
+        assertWithinBudget(2_048, () -> cmdLineParser.tryProcess(arguments));
+        assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(arguments));
+    }
+
+    @Test
+    public void metricsEnabled() {
+        registerPaintOptions();
+        cmdLineParser.enableMetrics();
+        assertWithinBudget(1_024, () -> cmdLineParser.process(PAINT_ARGUMENTS));
+    }
+}
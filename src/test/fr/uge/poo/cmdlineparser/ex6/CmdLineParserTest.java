@@ -1,12 +1,47 @@
 package fr.uge.poo.cmdlineparser.ex6;
 
 import fr.uge.poo.cmdlineparser.ex6.CmdLineParser.Option.OptionsBuilder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class CmdLineParserTest {
     private final CmdLineParser cmdLineParser = new CmdLineParser();
@@ -193,6 +228,94 @@ class CmdLineParserTest {
             cmdLineParser.usage();
 
         }
+
+        private static final String PAINT_USAGE = """
+                List of the options registered :
+                 -border-width
+                 -legacy
+                 -min-size
+                 -no-borders, "Set border to the drawing window"
+                 -remote-server
+                 -window-name, "Set the name of the graphic window"
+                """;
+
+        @Test
+        public void usageShouldListTheOptionsSortedWithTheirDoc() throws IOException {
+            var cmdLineParser = Application.createCmdLineParser(new PaintSettings.PaintSettingsBuilder());
+            var out = new StringBuilder();
+            cmdLineParser.usage(out);
+            assertEquals(PAINT_USAGE, out.toString());
+        }
+
+        @Test
+        public void usageShouldBeTheSameAsTheGeneratedOne() {
+            assertEquals(PaintSettingsBuilderParser.usage(), Application.createCmdLineParser(new PaintSettings.PaintSettingsBuilder()).usageText());
+        }
+
+        @Test
+        public void usageWithoutOptions() {
+            assertEquals("No options have been registered yet\n", new CmdLineParser().usageText());
+        }
+
+        @Test
+        public void usageShouldBeRenderedOnce() {
+            var cmdLineParser = Application.createCmdLineParser(new PaintSettings.PaintSettingsBuilder());
+            assertSame(cmdLineParser.usageText(), cmdLineParser.usageText());
+        }
+
+        @Test
+        public void registrationShouldInvalidateTheUsage() {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.addFlag("-b", () -> {});
+            assertEquals("List of the options registered :\n -b\n", cmdLineParser.usageText());
+            cmdLineParser.addOption(new OptionsBuilder("-a", 0, __ -> {}).doc("the first").build());
+            assertEquals("List of the options registered :\n -a, \"the first\"\n -b\n", cmdLineParser.usageText());
+        }
+
+        @Test
+        public void usageShouldBeWrittenInOneCall() throws IOException {
+            var cmdLineParser = Application.createCmdLineParser(new PaintSettings.PaintSettingsBuilder());
+            var calls = new ArrayList<CharSequence>();
+            cmdLineParser.usage(new Appendable() {
+                @Override
+                public Appendable append(CharSequence csq) {
+                    calls.add(csq);
+                    return this;
+                }
+
+                @Override
+                public Appendable append(CharSequence csq, int start, int end) {
+                    calls.add(csq.subSequence(start, end));
+                    return this;
+                }
+
+                @Override
+                public Appendable append(char c) {
+                    calls.add(String.valueOf(c));
+                    return this;
+                }
+            });
+            assertEquals(List.of(PAINT_USAGE), calls);
+        }
+
+        @Test
+        public void usageShouldBeWrittenInUtf8() throws IOException {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.addOption(new OptionsBuilder("-e", 0, __ -> {}).doc("\u00e9t\u00e9").build());
+            var out = new ByteArrayOutputStream();
+            cmdLineParser.writeUsage(out);
+            assertEquals(cmdLineParser.usageText(), out.toString(StandardCharsets.UTF_8));
+        }
+
+        @Test
+        public void usageShouldNotSignalTheObservers() throws IOException {
+            var log = new StringBuilder();
+            var cmdLineParser = new CmdLineParser(LogSink.of(log), LogLevel.DEBUG);
+            cmdLineParser.addFlag("-a", () -> {});
+            var before = log.toString();
+            cmdLineParser.usage(new StringBuilder());
+            assertEquals(before, log.toString());
+        }
     }
 
     @Nested
@@ -229,7 +352,18 @@ class CmdLineParserTest {
 
         @Test
         public void testSetBiConsumerIntegerToIntegerShouldWork() {
-            // TODO
+            String[] arguments = {"-window-name", "test", "-min-size", "600", "400"};
+            var minSizeOption = new CmdLineParser.Option.OptionsBuilder("-min-size", 2);
+            minSizeOption.setBiConsumerIntegerToInteger((width, height) -> {
+                optionsBuilder.setWindowWidth(width);
+                optionsBuilder.setWindowHeight(height);
+            });
+            cmdLineParser.registerWithParameters("-window-name", 1, (argList) -> optionsBuilder.setWindowName(argList.get(0)));
+            cmdLineParser.addOption(minSizeOption.build());
+            cmdLineParser.process(arguments);
+            var opt = optionsBuilder.build();
+            assertEquals("PaintOptions[bordered = false, bordered-width = 10, legacy = false, serv = null, window-name = test, window-width = 600, window-height = 400]",
+                    opt.toString());
         }
 
         @Test
@@ -322,4 +456,1670 @@ class CmdLineParserTest {
             });
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    public class sessionTest {
+        @Test
+        public void processTwiceShouldNotSeeTheOptionsOfTheFirstProcess() {
+            var cmdParser = new CmdLineParser();
+            cmdParser.addOption(new OptionsBuilder("-test", 0, l -> {
+            }).conflictWith("-test1").build());
+            cmdParser.addOption(new OptionsBuilder("-test1", 0, l -> {
+            }).build());
+            cmdParser.process(new String[]{"-test"});
+            assertDoesNotThrow(() -> cmdParser.process(new String[]{"-test1"}));
+        }
+
+        @Test
+        public void requiredOptionShouldBeCheckedForEachProcess() {
+            var cmdParser = new CmdLineParser();
+            cmdParser.addOption(new OptionsBuilder("-test", 0, l -> {
+            }).isRequired().build());
+            cmdParser.addFlag("-test1", () -> {
+            });
+            cmdParser.process(new String[]{"-test"});
+            assertThrows(IllegalStateException.class, () -> cmdParser.process(new String[]{"-test1"}));
+        }
+
+        @Test
+        public void processShouldReturnTheArgumentsOfItsOwnCall() {
+            cmdLineParser.addFlag("-test", () -> {
+            });
+            assertEquals(List.of("a", "b"), cmdLineParser.process(new String[]{"a", "-test", "b"}));
+            assertEquals(List.of("c"), cmdLineParser.process(new String[]{"-test", "c"}));
+        }
+    }
+
+    @Nested
+    public class compileTest {
+        @Test
+        public void compiledParserShouldNotSeeOptionsRegisteredAfter() {
+            cmdLineParser.addFlag("-test", () -> {
+            });
+            var compiled = cmdLineParser.compile();
+            cmdLineParser.addFlag("-test1", () -> {
+            });
+            assertThrows(IllegalArgumentException.class, () -> compiled.process(new String[]{"-test1"}));
+            assertDoesNotThrow(() -> cmdLineParser.process(new String[]{"-test1"}));
+        }
+
+        @Test
+        public void compileTwiceWithoutRegisteringShouldReturnTheSameParser() {
+            cmdLineParser.addFlag("-test", () -> {
+            });
+            assertSame(cmdLineParser.compile(), cmdLineParser.compile());
+        }
+
+        @Test
+        public void optionTableShouldFindNamesWithTheSameHashCode() {
+            assertEquals("-Aa".hashCode(), "-BB".hashCode());
+            var table = OptionTable.of(Map.of("-Aa", 1, "-BB", 2, "-C", 3));
+            assertAll(
+                    () -> assertEquals(1, table.get("-Aa")),
+                    () -> assertEquals(2, table.get("-BB")),
+                    () -> assertEquals(3, table.get(new StringBuilder("-C"))),
+                    () -> assertNull(table.get("-D"))
+            );
+        }
+
+        @Test
+        public void optionTableShouldFindAllTheNames() {
+            var byName = new HashMap<String, Integer>();
+            for (int i = 0; i < 10_000; i++) {
+                byName.put("-option-" + i, i);
+            }
+            var table = OptionTable.of(byName);
+            for (int i = 0; i < 10_000; i++) {
+                assertEquals(i, table.get("-option-" + i));
+            }
+            assertNull(table.get("-option-10000"));
+        }
+    }
+
+    @Nested
+    public class parametersTest {
+        @Test
+        public void parametersShouldBeTheFollowingArguments() {
+            var seen = new ArrayList<List<String>>();
+            cmdLineParser.registerWithParameters("-three", 3, argList -> seen.add(List.copyOf(argList)));
+            cmdLineParser.addFlag("-flag", () -> {
+            });
+            var files = cmdLineParser.process(new String[]{"-three", "a", "b", "c", "file", "-flag", "-three", "d", "e", "f"});
+            assertEquals(List.of(List.of("a", "b", "c"), List.of("d", "e", "f")), seen);
+            assertEquals(List.of("file"), files);
+        }
+
+        @Test
+        public void parametersShouldBeReadOnly() {
+            cmdLineParser.registerWithParameters("-one", 1, argList -> argList.set(0, "b"));
+            String[] arguments = {"-one", "a"};
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.process(arguments));
+            assertArrayEquals(new String[]{"-one", "a"}, arguments);
+        }
+    }
+
+    @Nested
+    public class primitiveConsumerTest {
+        @Test
+        public void primitiveConsumersShouldReceiveTheParsedParameters() {
+            var values = new ArrayList<Object>();
+            cmdLineParser.addOption(new OptionsBuilder("-int", 1).setIntConsumer(values::add).build());
+            cmdLineParser.addOption(new OptionsBuilder("-long", 1).setLongConsumer(values::add).build());
+            cmdLineParser.addOption(new OptionsBuilder("-double", 1).setDoubleConsumer(values::add).build());
+            cmdLineParser.addOption(new OptionsBuilder("-boolean", 1).setBooleanConsumer(values::add).build());
+            cmdLineParser.addOption(new OptionsBuilder("-ints", 2).setIntBiConsumer((a, b) -> values.add(a + b)).build());
+            cmdLineParser.addOption(new OptionsBuilder("-longs", 2).setLongBiConsumer((a, b) -> values.add(a * b)).build());
+            cmdLineParser.process(new String[]{"-int", "-12", "-long", "10000000000", "-double", "1.5",
+                    "-boolean", "TRUE", "-ints", "3", "4", "-longs", "100000", "100000"});
+            assertEquals(List.of(-12, 10_000_000_000L, 1.5, true, 7, 10_000_000_000L), values);
+        }
+
+        @Test
+        public void invalidNumberShouldThrowException() {
+            cmdLineParser.addOption(new OptionsBuilder("-int", 1).setIntConsumer(__ -> {
+            }).build());
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-int", "4a"}));
+        }
+
+        @Test
+        public void invalidBooleanShouldThrowException() {
+            cmdLineParser.addOption(new OptionsBuilder("-boolean", 1).setBooleanConsumer(__ -> {
+            }).build());
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-boolean", "yes"}));
+        }
+    }
+
+    @Nested
+    public class loggerTest {
+        @Test
+        public void debugLevelShouldLogEveryEvent() {
+            var builder = new StringBuilder();
+            var cmdParser = new CmdLineParser(LogSink.of(builder), LogLevel.DEBUG);
+            cmdParser.addFlag("-test", () -> {
+            });
+            cmdParser.process(new String[]{"-test"});
+            assertEquals("""
+                    INFO Option "-test" is registered
+                    DEBUG Option "-test" is processed
+                    DEBUG Process method is finished
+                    """, builder.toString());
+        }
+
+        @Test
+        public void infoLevelShouldOnlyLogRegistrations() {
+            var builder = new StringBuilder();
+            var cmdParser = new CmdLineParser(LogSink.of(builder), LogLevel.INFO);
+            cmdParser.addFlag("-test", () -> {
+            });
+            cmdParser.process(new String[]{"-test"});
+            assertEquals("INFO Option \"-test\" is registered\n", builder.toString());
+        }
+
+        @Test
+        public void optionWithAliasesShouldBeRegisteredOnce() {
+            var builder = new StringBuilder();
+            var cmdParser = new CmdLineParser(LogSink.of(builder), LogLevel.INFO);
+            cmdParser.addOption(new OptionsBuilder("-test", 0, __ -> {
+            }).addAliases("-t", "-tst").build());
+            assertEquals("INFO Option \"-test\" is registered\n", builder.toString());
+        }
+
+        @Test
+        public void offLevelShouldNotCallTheSink() {
+            var cmdParser = new CmdLineParser((level, format, argument) -> fail("nothing should be logged"), LogLevel.OFF);
+            cmdParser.addFlag("-test", () -> {
+            });
+            cmdParser.process(new String[]{"-test"});
+        }
+
+        @Test
+        public void asyncSinkShouldWriteEverythingOnClose() {
+            var builder = new StringBuffer();
+            try (var sink = new AsyncLogSink(builder, 1_000)) {
+                var cmdParser = new CmdLineParser(sink, LogLevel.DEBUG);
+                cmdParser.addFlag("-test", () -> {
+                });
+                for (int i = 0; i < 100; i++) {
+                    cmdParser.process(new String[]{"-test"});
+                }
+            }
+            assertEquals(201, builder.toString().lines().count());
+        }
+
+        @Test
+        public void closedAsyncSinkShouldNotMakeTheParsingFail() {
+            var builder = new StringBuffer();
+            var sink = new AsyncLogSink(builder, 1_000);
+            var cmdParser = new CmdLineParser(sink, LogLevel.DEBUG);
+            cmdParser.addFlag("-test", () -> {
+            });
+            sink.close();
+            assertEquals(List.of(), cmdParser.process(new String[]{"-test"}));
+            assertEquals(2, sink.dropped());
+            assertEquals("INFO Option \"-test\" is registered\n", builder.toString());
+        }
+
+        @Test
+        public void asyncSinkShouldWriteOrDropEveryEventLoggedWhileClosing() throws Exception {
+            var builder = new StringBuffer();
+            var sink = new AsyncLogSink(builder, 100_000);
+            var logger = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    sink.log(LogLevel.INFO, "event %d", i);
+                }
+            });
+            logger.start();
+            sink.close();
+            logger.join();
+            assertEquals(10_000, builder.toString().lines().count() + sink.dropped());
+        }
+    }
+
+    @Nested
+    public class constraintsTest {
+        private void addFlags(CmdLineParser cmdParser, String... names) {
+            for (var name : names) {
+                cmdParser.addFlag(name, () -> {
+                });
+            }
+        }
+
+        @Test
+        public void requiredOptionShouldBeNamedInTheMessage() {
+            cmdLineParser.addOption(new OptionsBuilder("-test", 0, l -> {
+            }).isRequired().build());
+            var exception = assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{}));
+            assertTrue(exception.getMessage().contains("-test"));
+        }
+
+        @Test
+        public void requiredOptionUsedByAliasShouldBeAccepted() {
+            cmdLineParser.addOption(new OptionsBuilder("-test", 0, l -> {
+            }).addAliases("-t").isRequired().build());
+            assertDoesNotThrow(() -> cmdLineParser.process(new String[]{"-t"}));
+        }
+
+        @Test
+        public void conflictsShouldWorkBeyondSixtyFourOptions() {
+            for (int i = 0; i < 200; i++) {
+                cmdLineParser.addFlag("-option" + i, () -> {
+                });
+            }
+            cmdLineParser.addOption(new OptionsBuilder("-test", 0, l -> {
+            }).conflictWith("-option150").build());
+            assertAll(
+                    () -> assertDoesNotThrow(() -> cmdLineParser.process(new String[]{"-test", "-option149"})),
+                    () -> assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-option150", "-test"}))
+            );
+        }
+
+        @Test
+        public void requiresShouldNeedTheOtherOption() {
+            cmdLineParser.addOption(new OptionsBuilder("-test", 0, l -> {
+            }).requires("-test1").build());
+            cmdLineParser.addOption(new OptionsBuilder("-test1", 0, l -> {
+            }).addAliases("-t1").build());
+            assertAll(
+                    () -> assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-test"})),
+                    () -> assertDoesNotThrow(() -> cmdLineParser.process(new String[]{"-test", "-t1"})),
+                    () -> assertDoesNotThrow(() -> cmdLineParser.process(new String[]{"-test1"}))
+            );
+        }
+
+        @Test
+        public void exactlyOneOfShouldRejectNoneAndSeveral() {
+            addFlags(cmdLineParser, "-a", "-b", "-c");
+            cmdLineParser.requireExactlyOneOf("-a", "-b");
+            assertAll(
+                    () -> assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-c"})),
+                    () -> assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-a", "-b"})),
+                    () -> assertDoesNotThrow(() -> cmdLineParser.process(new String[]{"-b", "-c"}))
+            );
+        }
+
+        @Test
+        public void atLeastOneOfShouldRejectNone() {
+            addFlags(cmdLineParser, "-a", "-b", "-c");
+            cmdLineParser.requireAtLeastOneOf("-a", "-b");
+            assertAll(
+                    () -> assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-c"})),
+                    () -> assertDoesNotThrow(() -> cmdLineParser.process(new String[]{"-a", "-b"}))
+            );
+        }
+
+        @Test
+        public void groupWithUnknownOptionShouldBeRejected() {
+            addFlags(cmdLineParser, "-a");
+            cmdLineParser.requireAtLeastOneOf("-a", "-unknown");
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-a"}));
+        }
+    }
+
+    @Nested
+    public class streamingTest {
+        @Test
+        public void iteratorShouldGiveTheArgumentsToTheConsumer() {
+            var seen = new ArrayList<String>();
+            cmdLineParser.registerWithParameters("-two", 2, argList -> seen.add(argList.get(0) + argList.get(1)));
+            var files = new ArrayList<String>();
+            cmdLineParser.process(List.of("a", "-two", "b", "c", "d").iterator(), files::add);
+            assertEquals(List.of("a", "d"), files);
+            assertEquals(List.of("bc"), seen);
+        }
+
+        @Test
+        public void streamShouldBeConsumedLazily() {
+            var count = new int[1];
+            cmdLineParser.addFlag("-flag", () -> count[0]++);
+            var files = new int[1];
+            cmdLineParser.process(Stream.iterate(0, i -> i + 1).limit(500_000).map(i -> i % 2 == 0 ? "-flag" : "file"),
+                    __ -> files[0]++);
+            assertEquals(250_000, count[0]);
+            assertEquals(250_000, files[0]);
+        }
+
+        @Test
+        public void missingParameterShouldThrowException() {
+            cmdLineParser.registerWithParameters("-two", 2, __ -> {
+            });
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(Stream.of("-two", "a"), __ -> {
+            }));
+        }
+
+        @Test
+        public void constraintsShouldBeCheckedAtTheEndOfTheStream() {
+            cmdLineParser.addOption(new OptionsBuilder("-test", 0, l -> {
+            }).isRequired().build());
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.process(Stream.of("file"), __ -> {
+            }));
+        }
+    }
+
+    @Nested
+    public class argFileTest {
+        @TempDir
+        Path directory;
+
+        private Path write(String name, String content) throws IOException {
+            return Files.writeString(directory.resolve(name), content);
+        }
+
+        @Test
+        public void argFileShouldBeAnArgumentWhenNotEnabled() {
+            assertEquals(List.of("@file"), cmdLineParser.process(new String[]{"@file"}));
+        }
+
+        @Test
+        public void linesModeShouldReadOneArgumentPerLine() throws IOException {
+            var file = write("args", "-window-name\nmy window\n\nfile1\r\n");
+            cmdLineParser.registerWithParameters("-window-name", 1, argList -> optionsBuilder.setWindowName(argList.get(0)));
+            cmdLineParser.enableArgFiles(ArgFile.Mode.LINES);
+            var files = cmdLineParser.process(new String[]{"@" + file, "file2"});
+            assertEquals(List.of("file1", "file2"), files);
+            assertTrue(optionsBuilder.build().toString().contains("window-name = my window"));
+        }
+
+        @Test
+        public void whitespaceModeShouldHandleQuotesAndEscapes() throws IOException {
+            var file = write("args", "-min-size 600\t400\n\"a b\" 'c\\d' e\\ f \"\u00e9t\u00e9\"");
+            cmdLineParser.addOption(new OptionsBuilder("-min-size", 2).setIntBiConsumer((width, height) -> {
+                optionsBuilder.setWindowWidth(width);
+                optionsBuilder.setWindowHeight(height);
+            }).build());
+            cmdLineParser.enableArgFiles(ArgFile.Mode.WHITESPACE);
+            var files = cmdLineParser.process(new String[]{"@" + file});
+            assertEquals(List.of("a b", "c\\d", "e f", "\u00e9t\u00e9"), files);
+            assertTrue(optionsBuilder.setWindowName("test").build().toString().contains("window-width = 600, window-height = 400"));
+        }
+
+        @Test
+        public void nestedArgFilesShouldBeExpanded() throws IOException {
+            var inner = write("inner", "b");
+            var outer = write("outer", "a\n@" + inner + "\nc");
+            cmdLineParser.enableArgFiles(ArgFile.Mode.LINES);
+            var files = new ArrayList<String>();
+            cmdLineParser.process(Stream.of("@" + outer, "d"), files::add);
+            assertEquals(List.of("a", "b", "c", "d"), files);
+        }
+
+        @Test
+        public void argFileIncludingItselfShouldBeRejected() throws IOException {
+            var file = directory.resolve("loop");
+            write("loop", "a\n@" + file);
+            cmdLineParser.enableArgFiles(ArgFile.Mode.LINES);
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"@" + file}));
+        }
+
+        @Test
+        public void missingArgFileShouldBeRejected() {
+            cmdLineParser.enableArgFiles(ArgFile.Mode.LINES);
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"@" + directory.resolve("missing")}));
+        }
+    }
+
+    @Nested
+    public class batchTest {
+        @Test
+        public void processAllShouldKeepTheOrderOfTheCommandLines() {
+            var counter = new LongAdder();
+            cmdLineParser.addFlag("-flag", counter::increment);
+            var commandLines = new ArrayList<String[]>();
+            for (int i = 0; i < 10_000; i++) {
+                commandLines.add(i % 3 == 0 ? new String[]{"-unknown", "" + i} : new String[]{"-flag", "" + i});
+            }
+            var outcomes = cmdLineParser.processAll(commandLines);
+            assertEquals(10_000, outcomes.size());
+            for (int i = 0; i < outcomes.size(); i++) {
+                var outcome = outcomes.get(i);
+                if (i % 3 == 0) {
+                    assertFalse(outcome.isSuccess());
+                    assertInstanceOf(IllegalArgumentException.class, outcome.error());
+                } else {
+                    assertEquals(List.of("" + i), outcome.arguments());
+                }
+            }
+            assertEquals(6_666, counter.sum());
+        }
+
+        @Test
+        public void processAllOnAStreamShouldKeepTheOrder() {
+            cmdLineParser.addFlag("-flag", () -> {
+            });
+            var outcomes = cmdLineParser.compile()
+                    .processAll(IntStream.range(0, 1_000).parallel().mapToObj(i -> new String[]{"-flag", "" + i}))
+                    .toList();
+            for (int i = 0; i < outcomes.size(); i++) {
+                assertEquals(List.of("" + i), outcomes.get(i).arguments());
+            }
+        }
+    }
+
+    @Nested
+    public class generatedParserTest {
+        private final String[] arguments = {"-l", "-no-borders", "-window-name", "filename1", "-border-width", "4",
+                "file", "-min-size", "600", "400", "-remote-server", "localhost", "8080"};
+
+        @Test
+        public void generatedParserShouldBehaveAsTheRuntimeParser() {
+            var expected = new PaintSettings.PaintSettingsBuilder();
+            var expectedFiles = Application.createCmdLineParser(expected).process(arguments);
+            var builder = new PaintSettings.PaintSettingsBuilder();
+            var files = PaintSettingsBuilderParser.process(arguments, builder);
+            assertEquals(expectedFiles, files);
+            assertEquals(expected.build().toString(), builder.build().toString());
+        }
+
+        @Test
+        public void generatedParserShouldRejectAnUnknownOption() {
+            var builder = new PaintSettings.PaintSettingsBuilder();
+            var exception = assertThrows(IllegalArgumentException.class, () -> PaintSettingsBuilderParser.process(new String[]{"-unknown"}, builder));
+            assertEquals("'-unknown' is not an option", exception.getMessage());
+        }
+
+        @Test
+        public void generatedParserShouldRejectMissingParameters() {
+            var builder = new PaintSettings.PaintSettingsBuilder();
+            assertThrows(IllegalArgumentException.class, () -> PaintSettingsBuilderParser.process(new String[]{"-window-name", "a", "-min-size", "600"}, builder));
+        }
+
+        @Test
+        public void generatedParserShouldRejectAnInvalidParameter() {
+            var builder = new PaintSettings.PaintSettingsBuilder();
+            var exception = assertThrows(IllegalStateException.class, () -> PaintSettingsBuilderParser.process(new String[]{"-border-width", "wide"}, builder));
+            assertInstanceOf(NumberFormatException.class, exception.getCause());
+        }
+
+        @Test
+        public void generatedParserShouldCheckTheRequiredOptions() {
+            var builder = new PaintSettings.PaintSettingsBuilder();
+            var exception = assertThrows(IllegalStateException.class, () -> PaintSettingsBuilderParser.process(new String[]{"-window-name", "a"}, builder));
+            assertEquals("A required option has not been used : -min-size", exception.getMessage());
+        }
+
+        @Test
+        public void generatedUsageShouldListTheOptions() {
+            assertEquals("""
+                    List of the options registered :
+                     -border-width
+                     -legacy
+                     -min-size
+                     -no-borders, "Set border to the drawing window"
+                     -remote-server
+                     -window-name, "Set the name of the graphic window"
+                    """, PaintSettingsBuilderParser.usage());
+        }
+    }
+
+    @Nested
+    public class bindingTest {
+        record Server(@CmdLineOption(value = "-host", aliases = "-h") String host,
+                      @CmdLineOption(value = "-port", required = true) int port,
+                      @CmdLineOption("-verbose") boolean verbose,
+                      @CmdLineOption("-ratio") double ratio,
+                      String ignored) {
+        }
+
+        record Unsupported(@CmdLineOption("-names") List<String> names) {
+        }
+
+        record Limits(@CmdLineOption("-max") long max, char separator, @CmdLineOption("-min") long min) {
+        }
+
+        static class BaseSettings {
+            final List<String> calls = new ArrayList<>();
+
+            @CmdLineOption("-size")
+            public BaseSettings setSize(int size) {
+                calls.add("base " + size);
+                return this;
+            }
+
+            @CmdLineOption("-verbose")
+            public void setVerbose(boolean verbose) {
+                calls.add("verbose " + verbose);
+            }
+        }
+
+        static class DerivedSettings extends BaseSettings {
+            @Override
+            @CmdLineOption("-size")
+            public DerivedSettings setSize(int size) {
+                calls.add("derived " + size);
+                return this;
+            }
+        }
+
+        @Test
+        public void boundBuilderShouldBehaveAsTheRuntimeParser() {
+            String[] arguments = {"-lg", "-window-name", "name", "file", "-min-size", "600", "400", "-remote-server", "localhost", "8080"};
+            var expected = new PaintSettings.PaintSettingsBuilder();
+            var expectedFiles = Application.createCmdLineParser(expected).process(arguments);
+            var builder = new PaintSettings.PaintSettingsBuilder();
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.bind(builder);
+            assertEquals(expectedFiles, cmdLineParser.process(arguments));
+            assertEquals(expected.build().toString(), builder.build().toString());
+        }
+
+        @Test
+        public void boundBuilderShouldCheckTheRequiredOptions() {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.bind(new PaintSettings.PaintSettingsBuilder());
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-window-name", "name"}));
+        }
+
+        @Test
+        public void boundBuilderShouldRejectAnInvalidParameter() {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.bind(new PaintSettings.PaintSettingsBuilder());
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-window-name", "name", "-min-size", "600", "wide"}));
+        }
+
+        @Test
+        public void overriddenSetterShouldBeBoundOnce() {
+            var settings = new DerivedSettings();
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.bind(settings);
+            assertEquals(List.of(), cmdLineParser.process(new String[]{"-size", "3", "-verbose"}));
+            assertEquals(List.of("derived 3", "verbose true"), settings.calls);
+        }
+
+        @Test
+        public void bindShouldRejectATypeWithoutOptions() {
+            var cmdLineParser = new CmdLineParser();
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.bind(new Object()));
+        }
+
+        @Test
+        public void parseShouldCreateTheRecord() {
+            var files = new ArrayList<String>();
+            var server = OptionBinding.parse(Server.class, new String[]{"-h", "localhost", "file", "-verbose", "-port", "8080", "-ratio", "0.5"}, files::add);
+            assertEquals(new Server("localhost", 8080, true, 0.5, null), server);
+            assertEquals(List.of("file"), files);
+        }
+
+        @Test
+        public void parseShouldUseTheDefaultValues() {
+            var server = OptionBinding.parse(Server.class, new String[]{"-port", "80"}, __ -> fail());
+            assertEquals(new Server(null, 80, false, 0.0, null), server);
+        }
+
+        @Test
+        public void parseShouldKeepEachComponentInItsSlot() {
+            assertEquals(new Limits(10_000_000_000L, '\0', -1), OptionBinding.parse(Limits.class, new String[]{"-min", "-1", "-max", "10000000000"}, __ -> {}));
+            assertEquals(new Limits(0, '\0', 0), OptionBinding.parse(Limits.class, new String[0], __ -> {}));
+        }
+
+        @Test
+        public void parseShouldCheckTheRequiredOptions() {
+            assertThrows(IllegalStateException.class, () -> OptionBinding.parse(Server.class, new String[]{"-verbose"}, __ -> {}));
+        }
+
+        @Test
+        public void parseShouldRejectAnUnsupportedType() {
+            assertThrows(IllegalArgumentException.class, () -> OptionBinding.parse(Unsupported.class, new String[0], __ -> {}));
+        }
+
+        @Test
+        public void parseShouldBeThreadSafe() {
+            IntStream.range(0, 10_000).parallel().forEach(i -> {
+                var server = OptionBinding.parse(Server.class, new String[]{"-port", "" + i}, __ -> {});
+                assertEquals(i, server.port());
+            });
+        }
+    }
+
+    @Nested
+    public class abbreviationTest {
+        private CmdLineParser paintParser(PaintSettings.PaintSettingsBuilder builder) {
+            var cmdLineParser = Application.createCmdLineParser(builder);
+            cmdLineParser.enableAbbreviations();
+            return cmdLineParser;
+        }
+
+        @Test
+        public void uniquePrefixesShouldBeAccepted() {
+            var builder = new PaintSettings.PaintSettingsBuilder();
+            var files = paintParser(builder).process(new String[]{"-win", "name", "-bord", "4", "-min", "600", "400", "file"});
+            assertEquals(List.of("file"), files);
+            assertEquals("PaintOptions[bordered = false, bordered-width = 4, legacy = false, serv = null, window-name = name, window-width = 600, window-height = 400]",
+                    builder.build().toString());
+        }
+
+        @Test
+        public void exactNamesAndAliasesShouldWinOverPrefixes() {
+            var builder = new PaintSettings.PaintSettingsBuilder();
+            paintParser(builder).process(new String[]{"-l", "-window-name", "name", "-min-size", "600", "400"});
+            assertTrue(builder.build().toString().contains("legacy = true"));
+        }
+
+        @Test
+        public void prefixOfAnOptionAndItsAliasesShouldBeAccepted() {
+            var cmdLineParser = new CmdLineParser();
+            var counter = new LongAdder();
+            cmdLineParser.addOption(new OptionsBuilder("-verbose", 0, __ -> counter.increment()).addAliases("-very-verbose").build());
+            cmdLineParser.addFlag("-output", () -> {});
+            cmdLineParser.enableAbbreviations();
+            cmdLineParser.process(new String[]{"-v", "-ver", "-very"});
+            assertEquals(3, counter.sum());
+        }
+
+        @Test
+        public void ambiguousPrefixShouldListTheCandidates() {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.addFlag("-window-name", () -> {});
+            cmdLineParser.addFlag("-window-width", () -> {});
+            cmdLineParser.addFlag("-border", () -> {});
+            cmdLineParser.enableAbbreviations();
+            var exception = assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-window-"}));
+            assertEquals("'-window-' is ambiguous, it could be [-window-name, -window-width]", exception.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-"}));
+        }
+
+        @Test
+        public void unknownNameShouldBeRejected() {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.addFlag("-window", () -> {});
+            cmdLineParser.enableAbbreviations();
+            var exception = assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-windows"}));
+            assertEquals("'-windows' is not an option", exception.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-x"}));
+        }
+
+        @Test
+        public void prefixesShouldBeRejectedByDefault() {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.addFlag("-window", () -> {});
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-win"}));
+        }
+
+        @Test
+        public void trieShouldResolveRangesOfTheToken() {
+            var trie = OptionTrie.of(Map.of("-a", 1, "-ab", 2, "-abc", 2, "-b", 3));
+            assertEquals(1, trie.find("x-ay", 1, 3));
+            assertEquals(2, trie.find("--ab=", 1, 4));
+            assertEquals(3, trie.find("-b", 0, 2));
+            assertNull(trie.find("-c", 0, 2));
+            assertFalse(trie.isPrefix("-c", 0, 2));
+            // ambiguous : no value, but the candidates
+            assertNull(trie.find("-", 0, 1));
+            assertTrue(trie.isPrefix("-", 0, 1));
+            assertEquals(List.of("-a", "-ab", "-abc", "-b"), trie.candidates("-", 0, 1));
+            assertNull(OptionTrie.of(Map.of()).find("-a", 0, 2));
+        }
+    }
+
+    @Nested
+    public class gnuSyntaxTest {
+        private final List<String> events = new ArrayList<>();
+
+        private CmdLineParser gnuParser() {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.addFlag("-a", () -> events.add("a"));
+            cmdLineParser.addFlag("-b", () -> events.add("b"));
+            cmdLineParser.addOption(new OptionsBuilder("-w", 1).setIntConsumer(width -> events.add("w" + width)).addAliases("--border-width").build());
+            cmdLineParser.addOption(new OptionsBuilder("--min-size", 2).setIntBiConsumer((width, height) -> events.add(width + "x" + height)).build());
+            cmdLineParser.addOption(new OptionsBuilder("-window-name", 1, params -> events.add(params.get(0))).addAliases("-n").build());
+            cmdLineParser.enableGnuSyntax();
+            return cmdLineParser;
+        }
+
+        @Test
+        public void shortFlagsShouldBeClustered() {
+            var files = gnuParser().process(new String[]{"-ab", "file", "-ba"});
+            assertEquals(List.of("file"), files);
+            assertEquals(List.of("a", "b", "b", "a"), events);
+        }
+
+        @Test
+        public void valueShouldBeAttachedToAShortOption() {
+            gnuParser().process(new String[]{"-w4", "-abw", "5", "-w", "6", "-nname"});
+            assertEquals(List.of("w4", "a", "b", "w5", "w6", "name"), events);
+        }
+
+        @Test
+        public void valueShouldBeAttachedToALongOption() {
+            gnuParser().process(new String[]{"--border-width=4", "--min-size=600", "400", "--border-width", "5"});
+            assertEquals(List.of("w4", "600x400", "w5"), events);
+        }
+
+        @Test
+        public void emptyAttachedValueShouldBeAParameter() {
+            var cmdLineParser = gnuParser();
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"--border-width="}));
+        }
+
+        @Test
+        public void doubleDashShouldEndTheOptions() {
+            var files = gnuParser().process(new String[]{"-a", "--", "-b", "--", "file"});
+            assertEquals(List.of("-b", "--", "file"), files);
+            assertEquals(List.of("a"), events);
+        }
+
+        @Test
+        public void nameOfAnOptionShouldNotBeAClusterOfFlags() {
+            var files = gnuParser().process(new String[]{"-window-name", "name", "-"});
+            assertEquals(List.of("name"), events);
+            assertEquals(List.of("-"), files);
+        }
+
+        @Test
+        public void unknownShortOptionShouldBeRejected() {
+            var cmdLineParser = gnuParser();
+            var exception = assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-axb"}));
+            assertEquals("'-x' is not an option", exception.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"--unknown=4"}));
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"--unknown"}));
+        }
+
+        @Test
+        public void flagShouldNotTakeAnAttachedValue() {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.addFlag("--verbose", () -> {});
+            cmdLineParser.enableGnuSyntax();
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"--verbose=true"}));
+        }
+
+        @Test
+        public void gnuSyntaxShouldBeDisabledByDefault() {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.addFlag("-a", () -> {});
+            cmdLineParser.addFlag("-b", () -> {});
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-ab"}));
+        }
+
+        @Test
+        public void gnuSyntaxShouldWorkOnAStream() {
+            var files = new ArrayList<String>();
+            gnuParser().process(Stream.of("-aw4", "file", "--", "-b"), files::add);
+            assertEquals(List.of("file", "-b"), files);
+            assertEquals(List.of("a", "w4"), events);
+        }
+
+        @Test
+        public void optionTableShouldResolveRangesOfTheToken() {
+            var table = OptionTable.of(Map.of("--border-width", 1, "-w", 2));
+            assertEquals(1, table.get("--border-width=4", 0, 14));
+            assertEquals(2, table.get("x-w", 1, 3));
+            assertNull(table.get("--border-width=4", 0, 13));
+        }
+    }
+
+    @Nested
+    public class twoPhaseTest {
+        private final List<String> events = new ArrayList<>();
+
+        private CmdLineParser parser() {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.addFlag("-a", () -> events.add("a"));
+            cmdLineParser.addOption(new OptionsBuilder("-b", 0, __ -> events.add("b")).conflictWith("-a").build());
+            cmdLineParser.addOption(new OptionsBuilder("-size", 2).setIntBiConsumer((width, height) -> events.add(width + "x" + height)).build());
+            cmdLineParser.addOption(new OptionsBuilder("-name", 1, params -> events.add(params.get(0))).isRequired().build());
+            return cmdLineParser;
+        }
+
+        @Test
+        public void parseShouldNotRunTheActions() {
+            var line = parser().parse(new String[]{"-a", "file", "-size", "600", "400", "-name", "n"});
+            assertEquals(List.of(), events);
+            assertEquals(3, line.nbOptions());
+            assertEquals(List.of("file"), line.arguments());
+        }
+
+        @Test
+        public void applyShouldRunTheActionsInOrder() {
+            var cmdLineParser = parser();
+            var line = cmdLineParser.parse(new String[]{"-a", "file", "-size", "600", "400", "-name", "n", "other"});
+            assertEquals(List.of("file", "other"), cmdLineParser.apply(line));
+            assertEquals(List.of("a", "600x400", "n"), events);
+        }
+
+        @Test
+        public void applyShouldBeRepeatable() {
+            var cmdLineParser = parser();
+            var line = cmdLineParser.parse(new String[]{"-name", "n"});
+            cmdLineParser.apply(line);
+            cmdLineParser.apply(line);
+            assertEquals(List.of("n", "n"), events);
+        }
+
+        @Test
+        public void parsedLineShouldNotSeeTheChangesOfTheArray() {
+            var cmdLineParser = parser();
+            var arguments = new String[]{"-name", "n", "file"};
+            var line = cmdLineParser.parse(arguments);
+            arguments[1] = "changed";
+            arguments[2] = "-a";
+            assertEquals(List.of("file"), cmdLineParser.apply(line));
+            assertEquals(List.of("n"), events);
+        }
+
+        @Test
+        public void rejectedLineShouldNotRunAnyAction() {
+            var cmdLineParser = parser();
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.parse(new String[]{"-name", "n", "-a", "-b"}));
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.parse(new String[]{"-a", "-size", "1", "2"}));
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.parse(new String[]{"-name", "n", "-size", "1"}));
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.parse(new String[]{"-name", "n", "-unknown"}));
+            assertEquals(List.of(), events);
+        }
+
+        @Test
+        public void applyShouldRejectALineOfAnotherParser() {
+            var line = parser().parse(new String[]{"-name", "n"});
+            var cmdLineParser = parser();
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.apply(line));
+        }
+
+        @Test
+        public void registrationShouldInvalidateTheParsedLines() {
+            var cmdLineParser = parser();
+            var line = cmdLineParser.parse(new String[]{"-name", "n"});
+            cmdLineParser.addFlag("-c", () -> {});
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.apply(line));
+        }
+
+        @Test
+        public void twoPhasesShouldSupportTheGnuSyntax() {
+            var cmdLineParser = parser();
+            cmdLineParser.addOption(new OptionsBuilder("-w", 1).setIntConsumer(width -> events.add("w" + width)).addAliases("--width").build());
+            cmdLineParser.enableGnuSyntax();
+            var line = cmdLineParser.parse(new String[]{"-aw4", "--width=5", "-name", "n", "--", "-b"});
+            assertEquals(List.of(), events);
+            assertEquals(List.of("-b"), cmdLineParser.apply(line));
+            assertEquals(List.of("a", "w4", "w5", "n"), events);
+        }
+
+        @Test
+        public void applyShouldSignalTheObservers() {
+            var log = new StringBuilder();
+            var cmdLineParser = new CmdLineParser(LogSink.of(log), LogLevel.DEBUG);
+            cmdLineParser.addFlag("-a", () -> {});
+            var line = cmdLineParser.parse(new String[]{"-a"});
+            var before = log.length();
+            cmdLineParser.apply(line);
+            assertTrue(log.length() > before);
+        }
+    }
+
+    @Nested
+    public class parseCacheTest {
+        private final List<String> events = new ArrayList<>();
+
+        private CmdLineParser parser(int cacheSize) {
+            var cmdLineParser = new CmdLineParser();
+            cmdLineParser.addFlag("-a", () -> events.add("a"));
+            cmdLineParser.addOption(new OptionsBuilder("-size", 1).setIntConsumer(size -> events.add("size" + size)).build());
+            cmdLineParser.enableParseCache(cacheSize);
+            return cmdLineParser;
+        }
+
+        @Test
+        public void sameArgumentsShouldHitTheCache() {
+            var cmdLineParser = parser(10);
+            assertEquals(List.of("file"), cmdLineParser.process(new String[]{"-a", "file", "-size", "4"}));
+            assertEquals(List.of("file"), cmdLineParser.process(new String[]{"-a", "file", "-size", "4"}));
+            assertEquals(List.of("a", "size4", "a", "size4"), events);
+            assertEquals(new CompiledCmdLineParser.CacheStats(1, 1, 0, 1), cmdLineParser.cacheStats().orElseThrow());
+        }
+
+        @Test
+        public void cacheShouldKeepItsOwnCopyOfTheArguments() {
+            var cmdLineParser = parser(10);
+            String[] arguments = {"-size", "4"};
+            cmdLineParser.process(arguments);
+            arguments[1] = "5";
+            cmdLineParser.process(arguments);
+            cmdLineParser.process(new String[]{"-size", "4"});
+            assertEquals(List.of("size4", "size5", "size4"), events);
+            assertEquals(new CompiledCmdLineParser.CacheStats(1, 2, 0, 2), cmdLineParser.cacheStats().orElseThrow());
+        }
+
+        @Test
+        public void leastRecentlyUsedLineShouldBeEvicted() {
+            var cmdLineParser = parser(2);
+            cmdLineParser.process(new String[]{"-size", "1"});
+            cmdLineParser.process(new String[]{"-size", "2"});
+            cmdLineParser.process(new String[]{"-size", "1"});
+            cmdLineParser.process(new String[]{"-size", "3"});
+            cmdLineParser.process(new String[]{"-size", "1"});
+            cmdLineParser.process(new String[]{"-size", "2"});
+            assertEquals(new CompiledCmdLineParser.CacheStats(2, 4, 2, 2), cmdLineParser.cacheStats().orElseThrow());
+        }
+
+        @Test
+        public void recentlyUsedLineShouldStayInALargeCache() {
+            var cmdLineParser = parser(100);
+            cmdLineParser.process(new String[]{"-a"});
+            for (int i = 0; i < 1_000; i++) {
+                cmdLineParser.process(new String[]{"-size", "" + i});
+                cmdLineParser.process(new String[]{"-a"});
+            }
+            assertEquals(new CompiledCmdLineParser.CacheStats(1_000, 1_001, 901, 100), cmdLineParser.cacheStats().orElseThrow());
+        }
+
+        @Test
+        public void rejectedLineShouldNotBeCachedNorApplied() {
+            var cmdLineParser = parser(10);
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-a", "-size"}));
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-a", "-size"}));
+            assertEquals(List.of(), events);
+            assertEquals(0, cmdLineParser.cacheStats().orElseThrow().size());
+        }
+
+        @Test
+        public void registrationShouldEmptyTheCache() {
+            var cmdLineParser = parser(10);
+            cmdLineParser.process(new String[]{"-a"});
+            cmdLineParser.addFlag("-b", () -> events.add("b"));
+            assertEquals(List.of(), cmdLineParser.process(new String[]{"-a"}));
+            assertEquals(List.of("a", "a"), events);
+            assertEquals(new CompiledCmdLineParser.CacheStats(0, 1, 0, 1), cmdLineParser.cacheStats().orElseThrow());
+        }
+
+        @Test
+        public void cacheShouldBeDisabledByDefault() {
+            var cmdLineParser = new CmdLineParser();
+            assertTrue(cmdLineParser.cacheStats().isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.enableParseCache(0));
+        }
+
+        @Test
+        public void hitShouldNotTakeTheLockOfTheInsertions() throws Exception {
+            var parser = parser(4).compile();
+            var cache = new ParseCache(4);
+            String[] arguments = {"-a"};
+            var line = parser.parse(arguments);
+            cache.put(arguments.clone(), line);
+            var executor = Executors.newSingleThreadExecutor();
+            try {
+                synchronized (cache) {
+                    assertSame(line, executor.submit(() -> cache.lookup(arguments)).get(10, TimeUnit.SECONDS));
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        @Test
+        public void cacheShouldBeThreadSafe() {
+            var cmdLineParser = new CmdLineParser();
+            var total = new LongAdder();
+            cmdLineParser.addOption(new OptionsBuilder("-size", 1).setIntConsumer(total::add).build());
+            cmdLineParser.enableParseCache(16);
+            IntStream.range(0, 10_000).parallel().forEach(i -> cmdLineParser.process(new String[]{"-size", "" + (i % 32)}));
+            assertEquals(IntStream.range(0, 10_000).map(i -> i % 32).asLongStream().sum(), total.sum());
+            var stats = cmdLineParser.cacheStats().orElseThrow();
+            assertEquals(10_000, stats.hits() + stats.misses());
+            assertEquals(16, stats.size());
+        }
+    }
+
+    @Nested
+    public class daemonTest {
+        @TempDir
+        Path directory;
+
+        private int run(Path socket, List<String> arguments, ByteArrayOutputStream out, ByteArrayOutputStream err) throws IOException {
+            return DaemonClient.run(socket, new ParserDaemon.Invocation(arguments, directory, Map.of("HOME", "/home")), out, err);
+        }
+
+        @Test
+        public void daemonShouldRunTheCommandForEachClient() throws Exception {
+            var socket = directory.resolve("daemon.socket");
+            try (var daemon = new ParserDaemon(socket, ParserDaemon::paint)) {
+                var thread = new Thread(() -> {
+                    try {
+                        daemon.serve();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                thread.start();
+
+                var out = new ByteArrayOutputStream();
+                var err = new ByteArrayOutputStream();
+                var exitCode = run(socket, List.of("-window-name", "test", "-min-size", "600", "400", "file"), out, err);
+                assertEquals(0, exitCode);
+                assertEquals(directory.resolve("file") + "\nPaintOptions[bordered = false, bordered-width = 10, legacy = false, serv = null, window-name = test, window-width = 600, window-height = 400]\n",
+                        out.toString(StandardCharsets.UTF_8));
+
+                var out2 = new ByteArrayOutputStream();
+                var err2 = new ByteArrayOutputStream();
+                assertEquals(1, run(socket, List.of("-unknown"), out2, err2));
+                assertEquals("'-unknown' is not an option\n", err2.toString(StandardCharsets.UTF_8));
+            }
+        }
+
+        @Test
+        public void paintShouldUseTheEnvironmentOfTheClient() {
+            var out = new ByteArrayOutputStream();
+            var invocation = new ParserDaemon.Invocation(List.of("-window-name", "test", "file"), directory,
+                    Map.of(ParserDaemon.OPTIONS_VARIABLE, " -legacy  -min-size 600 400 "));
+            assertEquals(0, ParserDaemon.paint(invocation, new PrintStream(out, true, StandardCharsets.UTF_8), System.err));
+            assertEquals(directory.resolve("file") + "\nPaintOptions[bordered = false, bordered-width = 10, legacy = true, serv = null, window-name = test, window-width = 600, window-height = 400]\n",
+                    out.toString(StandardCharsets.UTF_8));
+        }
+
+        @Test
+        public void paintShouldNotShareTheSettingsOfTheInvocations() {
+            var out = new ByteArrayOutputStream();
+            var print = new PrintStream(out, true, StandardCharsets.UTF_8);
+            var legacy = new ParserDaemon.Invocation(List.of("-legacy", "-window-name", "a", "-min-size", "1", "2"), directory, Map.of());
+            var plain = new ParserDaemon.Invocation(List.of("-window-name", "b", "-min-size", "3", "4"), directory, Map.of());
+            assertEquals(0, ParserDaemon.paint(legacy, print, System.err));
+            out.reset();
+            assertEquals(0, ParserDaemon.paint(plain, print, System.err));
+            assertEquals("PaintOptions[bordered = false, bordered-width = 10, legacy = false, serv = null, window-name = b, window-width = 3, window-height = 4]\n",
+                    out.toString(StandardCharsets.UTF_8));
+        }
+
+        @Test
+        public void daemonShouldNotReplaceAnotherFile() throws IOException {
+            var file = Files.writeString(directory.resolve("file"), "data");
+            assertThrows(IllegalStateException.class, () -> new ParserDaemon(file, ParserDaemon::paint));
+            assertEquals("data", Files.readString(file));
+            assertThrows(IllegalStateException.class, () -> new ParserDaemon(directory, ParserDaemon::paint));
+        }
+
+        @Test
+        public void daemonShouldNotReplaceARunningDaemon() throws IOException {
+            var socket = directory.resolve("daemon.socket");
+            var daemon = new ParserDaemon(socket, ParserDaemon::paint);
+            try {
+                assertThrows(IllegalStateException.class, () -> new ParserDaemon(socket, ParserDaemon::paint));
+            } finally {
+                daemon.close();
+            }
+        }
+
+        @Test
+        public void daemonShouldReplaceAStaleSocket() throws IOException {
+            var socket = directory.resolve("daemon.socket");
+            // a socket bound then closed without deleting its file, as left by a daemon which was killed
+            try (var stale = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+                stale.bind(UnixDomainSocketAddress.of(socket));
+            }
+            assertTrue(Files.exists(socket));
+            var daemon = new ParserDaemon(socket, ParserDaemon::paint);
+            try {
+                assertTrue(Files.exists(socket));
+            } finally {
+                daemon.close();
+            }
+        }
+
+        @Test
+        public void socketShouldOnlyBeAccessibleByItsOwner() throws IOException {
+            assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+            var socket = directory.resolve("daemon.socket");
+            var daemon = new ParserDaemon(socket, ParserDaemon::paint);
+            try {
+                assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE), Files.getPosixFilePermissions(socket));
+            } finally {
+                daemon.close();
+            }
+        }
+
+        @Test
+        public void daemonShouldGiveTheInvocationToTheCommand() throws Exception {
+            var socket = directory.resolve("daemon.socket");
+            try (var daemon = new ParserDaemon(socket, (invocation, out, err) -> {
+                out.print(invocation.workingDirectory() + " " + invocation.environment().get("HOME") + " " + invocation.arguments());
+                return 42;
+            })) {
+                new Thread(() -> {
+                    try {
+                        daemon.serve();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).start();
+                var out = new ByteArrayOutputStream();
+                assertEquals(42, run(socket, List.of("a", "\u00e9"), out, new ByteArrayOutputStream()));
+                assertEquals(directory + " /home [a, \u00e9]\n", out.toString(StandardCharsets.UTF_8));
+            }
+        }
+
+        private ParserDaemon serve(Path socket, ParserDaemon.Command command) throws IOException {
+            var daemon = new ParserDaemon(socket, command);
+            var thread = new Thread(() -> {
+                try {
+                    daemon.serve();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            return daemon;
+        }
+
+        @Test
+        public void protocolShouldBeText() throws Exception {
+            var socket = directory.resolve("daemon.socket");
+            var daemon = serve(socket, (invocation, out, err) -> {
+                out.println(invocation.workingDirectory() + " " + invocation.environment() + " " + invocation.arguments());
+                err.print("no newline");
+                return 3;
+            });
+            try (var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                channel.connect(UnixDomainSocketAddress.of(socket));
+                var output = Channels.newOutputStream(channel);
+                output.write("D/tmp\0EHOME=/home\0Aa b\0A\u00e9\0\0".getBytes(StandardCharsets.UTF_8));
+                var response = new String(Channels.newInputStream(channel).readAllBytes(), StandardCharsets.UTF_8);
+                assertEquals("out /tmp {HOME=/home} [a b, \u00e9]\nerr no newline\nexit 3\n", response);
+            } finally {
+                daemon.close();
+            }
+        }
+
+        @Test
+        public void clientScriptShouldNotNeedAJvm() throws Exception {
+            var script = Path.of("bin", "paint-client").toAbsolutePath();
+            assumeTrue(Files.isExecutable(script));
+            assumeTrue(Stream.of(System.getenv().getOrDefault("PATH", "").split(File.pathSeparator))
+                    .anyMatch(path -> Files.isExecutable(Path.of(path, "socat")) || Files.isExecutable(Path.of(path, "nc"))));
+            var socket = directory.resolve("daemon.socket");
+            var daemon = serve(socket, ParserDaemon::paint);
+            try {
+                var process = new ProcessBuilder(script.toString(), socket.toString(), "-window-name", "test", "file")
+                        .directory(directory.toFile())
+                        .redirectError(ProcessBuilder.Redirect.INHERIT);
+                process.environment().put(ParserDaemon.OPTIONS_VARIABLE, "-min-size 600 400");
+                var client = process.start();
+                var out = new String(client.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                assertEquals(0, client.waitFor());
+                assertEquals(directory.toRealPath().resolve("file") + "\nPaintOptions[bordered = false, bordered-width = 10, legacy = false, serv = null, window-name = test, window-width = 600, window-height = 400]\n",
+                        out);
+
+                var rejected = new ProcessBuilder(script.toString(), socket.toString(), "-unknown")
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                var err = new String(rejected.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
+                assertEquals(1, rejected.waitFor());
+                assertEquals("'-unknown' is not an option\n", err);
+            } finally {
+                daemon.close();
+            }
+        }
+    }
+
+    @Nested
+    public class metricsTest {
+        private ParserMetrics metrics() {
+            cmdLineParser.addFlag("-a", () -> {});
+            cmdLineParser.addOption(new OptionsBuilder("-size", 1).setIntConsumer(size -> {}).addAliases("-s").build());
+            cmdLineParser.addOption(new OptionsBuilder("-b", 0, params -> {}).conflictWith("-a").build());
+            return cmdLineParser.enableMetrics();
+        }
+
+        @Test
+        public void metricsShouldBeDisabledByDefault() {
+            assertTrue(cmdLineParser.metrics().isEmpty());
+            var metrics = cmdLineParser.enableMetrics();
+            assertSame(metrics, cmdLineParser.enableMetrics());
+            assertSame(metrics, cmdLineParser.metrics().orElseThrow());
+        }
+
+        @Test
+        public void metricsShouldCountTheOptionsByCanonicalName() {
+            var metrics = metrics();
+            cmdLineParser.addFlag("-c", () -> {});
+            cmdLineParser.process(new String[]{"-a", "-size", "4", "file"});
+            cmdLineParser.process(new String[]{"-s", "5"});
+            assertEquals(Map.of("-a", 1L, "-size", 2L, "-b", 0L, "-c", 0L), metrics.getOptionCounts());
+            assertEquals(2, metrics.optionCount("-size"));
+            assertEquals(0, metrics.optionCount("-s"));
+        }
+
+        @Test
+        public void metricsShouldCountTheFailuresByCode() {
+            var metrics = metrics();
+            cmdLineParser.process(new String[]{"-a"});
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-unknown"}));
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-size"}));
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-a", "-b"}));
+            assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-size", "four"}));
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(List.of("-x").iterator(), argument -> {}));
+            assertEquals(6, metrics.getProcessCount());
+            assertEquals(5, metrics.getFailureCount());
+            assertEquals(Map.of(ErrorCode.UNKNOWN_OPTION, 2L, ErrorCode.MISSING_PARAMETERS, 1L, ErrorCode.CONFLICT, 1L, ErrorCode.ACTION_FAILED, 1L),
+                    metrics.failureCounts());
+            assertEquals(2, metrics.failureCount(ErrorCode.UNKNOWN_OPTION));
+        }
+
+        @Test
+        public void exceptionsShouldCarryTheirCode() {
+            cmdLineParser.addFlag("-all", () -> {});
+            cmdLineParser.addFlag("-also", () -> {});
+            cmdLineParser.addOption(new OptionsBuilder("-req", 0, params -> {}).isRequired().build());
+            cmdLineParser.enableAbbreviations();
+            assertEquals(ErrorCode.AMBIGUOUS_OPTION, ErrorCode.of(assertThrows(CmdLineArgumentException.class, () -> cmdLineParser.process(new String[]{"-al"}))));
+            assertEquals(ErrorCode.MISSING_REQUIRED, ErrorCode.of(assertThrows(CmdLineStateException.class, () -> cmdLineParser.process(new String[]{"-all"}))));
+            assertEquals(ErrorCode.OTHER, ErrorCode.of(new IllegalStateException()));
+        }
+
+        @Test
+        public void histogramShouldCountEachProcess() {
+            var metrics = metrics();
+            for (int i = 0; i < 10; i++) {
+                cmdLineParser.process(new String[]{"-a", "file"});
+            }
+            var histogram = metrics.getLatencyHistogram();
+            assertEquals(10, histogram.values().stream().mapToLong(Long::longValue).sum());
+            assertEquals(256, histogram.keySet().iterator().next());
+            assertTrue(histogram.containsKey(Long.MAX_VALUE));
+            assertTrue(metrics.getMeanLatencyNanos() > 0);
+            var median = metrics.getLatencyQuantileNanos(0.5);
+            assertTrue(median >= 256 && median <= metrics.getLatencyQuantileNanos(1));
+            assertThrows(IllegalArgumentException.class, () -> metrics.getLatencyQuantileNanos(2));
+        }
+
+        @Test
+        public void prometheusTextShouldHoldAllTheCounters() {
+            var metrics = metrics();
+            cmdLineParser.addFlag("-\"quoted\"", () -> {});
+            cmdLineParser.process(new String[]{"-a"});
+            assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-unknown"}));
+            var text = metrics.prometheusText();
+            assertAll(
+                    () -> assertTrue(text.contains("# TYPE cmdlineparser_process_total counter\ncmdlineparser_process_total 2\n")),
+                    () -> assertTrue(text.contains("cmdlineparser_failures_total{code=\"UNKNOWN_OPTION\"} 1\n")),
+                    () -> assertTrue(text.contains("cmdlineparser_failures_total{code=\"CONFLICT\"} 0\n")),
+                    () -> assertTrue(text.contains("cmdlineparser_option_total{option=\"-a\"} 1\n")),
+                    () -> assertTrue(text.contains("cmdlineparser_option_total{option=\"-\\\"quoted\\\"\"} 0\n")),
+                    () -> assertTrue(text.contains("cmdlineparser_process_duration_seconds_bucket{le=\"+Inf\"} 2\n")),
+                    () -> assertTrue(text.contains("cmdlineparser_process_duration_seconds_count 2\n"))
+            );
+        }
+
+        @Test
+        public void metricsShouldBeServedOverHttp() throws Exception {
+            var metrics = metrics();
+            cmdLineParser.process(new String[]{"-a"});
+            try (var server = new MetricsHttpServer(new InetSocketAddress("127.0.0.1", 0), metrics)) {
+                var url = URI.create("http://127.0.0.1:" + server.address().getPort() + "/metrics").toURL();
+                var connection = (HttpURLConnection) url.openConnection();
+                try (var input = connection.getInputStream()) {
+                    assertEquals(200, connection.getResponseCode());
+                    assertEquals(MetricsHttpServer.CONTENT_TYPE, connection.getContentType());
+                    assertEquals(metrics.prometheusText(), new String(input.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        @Test
+        public void metricsShouldBePublishedAsMBean() throws Exception {
+            var metrics = metrics();
+            cmdLineParser.process(new String[]{"-a"});
+            var name = metrics.registerMBean("metricsTest");
+            try {
+                var server = ManagementFactory.getPlatformMBeanServer();
+                assertEquals(1L, server.getAttribute(name, "ProcessCount"));
+                assertEquals(0L, server.getAttribute(name, "FailureCount"));
+                assertThrows(IllegalStateException.class, () -> metrics.registerMBean("metricsTest"));
+            } finally {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            }
+        }
+    }
+
+    @Nested
+    public class jfrTest {
+        @TempDir
+        Path directory;
+
+        private List<RecordedEvent> record(Runnable runnable) throws IOException {
+            try (var recording = new Recording()) {
+                recording.enable("fr.uge.poo.cmdlineparser.Process");
+                recording.enable("fr.uge.poo.cmdlineparser.Action");
+                recording.enable("fr.uge.poo.cmdlineparser.Validation");
+                recording.start();
+                runnable.run();
+                recording.stop();
+                var file = directory.resolve("recording.jfr");
+                recording.dump(file);
+                return RecordingFile.readAllEvents(file);
+            }
+        }
+
+        private static List<RecordedEvent> eventsOf(List<RecordedEvent> events, String name) {
+            return events.stream().filter(event -> event.getEventType().getName().equals("fr.uge.poo.cmdlineparser." + name)).toList();
+        }
+
+        @Test
+        public void eventsShouldBeDisabledWithoutRecording() {
+            assertFalse(new ParserEvents.ProcessEvent().isEnabled());
+            assertFalse(new ParserEvents.ActionEvent().isEnabled());
+            assertFalse(new ParserEvents.ValidationEvent().isEnabled());
+        }
+
+        @Test
+        public void processShouldBeRecorded() throws IOException {
+            cmdLineParser.addFlag("-a", () -> {});
+            cmdLineParser.addOption(new OptionsBuilder("-size", 1).setIntConsumer(size -> {}).build());
+            var events = record(() -> {
+                cmdLineParser.process(new String[]{"-a", "-size", "4", "file"});
+                assertThrows(IllegalArgumentException.class, () -> cmdLineParser.process(new String[]{"-unknown"}));
+                cmdLineParser.process(List.of("-a", "file").iterator(), argument -> {});
+            });
+            var processes = eventsOf(events, "Process");
+            assertEquals(3, processes.size());
+            assertAll(
+                    () -> assertEquals(4, processes.get(0).getInt("tokenCount")),
+                    () -> assertEquals(2, processes.get(0).getInt("optionCount")),
+                    () -> assertEquals("SUCCESS", processes.get(0).getString("outcome")),
+                    () -> assertEquals(1, processes.get(1).getInt("tokenCount")),
+                    () -> assertEquals("UNKNOWN_OPTION", processes.get(1).getString("outcome")),
+                    () -> assertEquals(2, processes.get(2).getInt("tokenCount")),
+                    () -> assertEquals(1, processes.get(2).getInt("optionCount"))
+            );
+        }
+
+        @Test
+        public void eventsShouldNotRecordAStackTrace() throws IOException {
+            cmdLineParser.addFlag("-a", () -> {});
+            cmdLineParser.addOption(new OptionsBuilder("-b", 0, params -> {}).requires("-a").build());
+            var events = record(() -> cmdLineParser.process(new String[]{"-a", "-b"}));
+            for (var name : List.of("Process", "Action", "Validation")) {
+                var recorded = eventsOf(events, name);
+                assertFalse(recorded.isEmpty(), name);
+                assertTrue(recorded.stream().allMatch(event -> event.getStackTrace() == null), name);
+            }
+        }
+
+        @Test
+        public void actionsShouldBeRecorded() throws IOException {
+            cmdLineParser.addFlag("-a", () -> {});
+            cmdLineParser.addOption(new OptionsBuilder("-size", 1).setIntConsumer(size -> {}).build());
+            var events = record(() -> assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-a", "-size", "four"})));
+            var actions = eventsOf(events, "Action");
+            assertEquals(List.of("-a", "-size"), actions.stream().map(event -> event.getString("option")).toList());
+            assertEquals(List.of(false, true), actions.stream().map(event -> event.getBoolean("failed")).toList());
+            assertFalse(actions.get(0).getDuration().isNegative());
+        }
+
+        @Test
+        public void validationsShouldBeRecorded() throws IOException {
+            cmdLineParser.addFlag("-a", () -> {});
+            cmdLineParser.addOption(new OptionsBuilder("-b", 0, params -> {}).conflictWith("-a").build());
+            cmdLineParser.addOption(new OptionsBuilder("-c", 0, params -> {}).isRequired().build());
+            var events = record(() -> {
+                cmdLineParser.process(new String[]{"-b", "-c"});
+                assertThrows(IllegalStateException.class, () -> cmdLineParser.process(new String[]{"-a"}));
+            });
+            var validations = eventsOf(events, "Validation");
+            // the conflicts are symmetric, -a is checked against -b
+            assertEquals(List.of("conflicts", "required", "conflicts", "required"), validations.stream().map(event -> event.getString("phase")).toList());
+            assertEquals("-b", validations.get(0).getString("option"));
+            assertEquals("-a", validations.get(2).getString("option"));
+            assertEquals(List.of(true, true, true, false), validations.stream().map(event -> event.getBoolean("passed")).toList());
+        }
+    }
+
+    @Nested
+    public class parseResultTest {
+        private final List<String> events = new ArrayList<>();
+
+        private CompiledCmdLineParser parser() {
+            cmdLineParser.addFlag("-a", () -> events.add("a"));
+            cmdLineParser.addOption(new OptionsBuilder("-size", 1).setIntConsumer(size -> events.add("size" + size)).build());
+            cmdLineParser.addOption(new OptionsBuilder("-b", 0, params -> events.add("b")).conflictWith("-a").build());
+            return cmdLineParser.compile();
+        }
+
+        private ParseError errorOf(ParseResult result) {
+            return assertInstanceOf(ParseResult.Failure.class, result).error();
+        }
+
+        @Test
+        public void tryProcessShouldRunTheActions() {
+            var result = parser().tryProcess(new String[]{"-a", "file", "-size", "4"});
+            assertEquals(new ParseResult.Success(List.of("file")), result);
+            assertTrue(result.isSuccess());
+            assertEquals(List.of("file"), result.orElseThrow());
+            assertEquals(List.of("a", "size4"), events);
+        }
+
+        @Test
+        public void unknownOptionShouldBeReportedWithItsIndex() {
+            var error = errorOf(parser().tryProcess(new String[]{"-a", "file", "-unknown"}));
+            assertAll(
+                    () -> assertEquals(ErrorCode.UNKNOWN_OPTION, error.code()),
+                    () -> assertEquals(2, error.tokenIndex()),
+                    () -> assertEquals("-unknown", error.subject()),
+                    () -> assertEquals("'-unknown' is not an option", error.message()),
+                    () -> assertEquals(List.of(), events)
+            );
+        }
+
+        @Test
+        public void missingParametersShouldBeReported() {
+            var error = errorOf(parser().tryProcess(new String[]{"file", "-size"}));
+            assertEquals(ErrorCode.MISSING_PARAMETERS, error.code());
+            assertEquals(1, error.tokenIndex());
+            assertEquals("-size", error.subject());
+        }
+
+        @Test
+        public void conflictShouldNameTheOptions() {
+            var error = errorOf(parser().tryProcess(new String[]{"-a", "-b"}));
+            assertEquals(ErrorCode.CONFLICT, error.code());
+            assertEquals(1, error.tokenIndex());
+            assertEquals("-b", error.subject());
+            assertEquals(List.of("-a"), error.options());
+            assertEquals("Option -a is in conflict with previously seen options", error.message());
+        }
+
+        @Test
+        public void exceptionShouldKeepItsErrorWhenSerialized() throws Exception {
+            var result = parser().tryProcess(new String[]{"-a", "-b"});
+            var exception = assertThrows(CmdLineStateException.class, result::orElseThrow);
+            var bytes = new ByteArrayOutputStream();
+            try (var output = new ObjectOutputStream(bytes)) {
+                output.writeObject(exception);
+            }
+            try (var input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                var copy = assertInstanceOf(CmdLineStateException.class, input.readObject());
+                assertEquals(ErrorCode.CONFLICT, copy.code());
+                assertEquals(List.of("-a"), copy.error().options());
+                assertEquals(exception.getMessage(), copy.getMessage());
+            }
+        }
+
+        @Test
+        public void failedActionShouldKeepItsCause() {
+            var result = parser().tryProcess(new String[]{"-a", "-size", "four"});
+            var error = errorOf(result);
+            assertEquals(ErrorCode.ACTION_FAILED, error.code());
+            assertEquals(1, error.tokenIndex());
+            assertInstanceOf(NumberFormatException.class, error.cause().orElseThrow());
+            assertEquals(List.of("a"), events);
+            var exception = assertThrows(IllegalStateException.class, result::orElseThrow);
+            assertInstanceOf(NumberFormatException.class, exception.getCause());
+        }
+
+        @Test
+        public void missingRequiredOptionsShouldAllBeNamed() {
+            cmdLineParser.addOption(new OptionsBuilder("-c", 0, params -> {}).isRequired().build());
+            cmdLineParser.addOption(new OptionsBuilder("-d", 0, params -> {}).isRequired().build());
+            var error = errorOf(cmdLineParser.compile().tryProcess(new String[0]));
+            assertEquals(ErrorCode.MISSING_REQUIRED, error.code());
+            assertEquals(-1, error.tokenIndex());
+            assertEquals(List.of("-c", "-d"), error.options());
+            assertEquals("A required option has not been used : -c, -d", error.message());
+        }
+
+        @Test
+        public void ambiguousPrefixShouldListTheCandidates() {
+            cmdLineParser.addFlag("-all", () -> {});
+            cmdLineParser.addFlag("-also", () -> {});
+            cmdLineParser.enableAbbreviations();
+            var error = errorOf(cmdLineParser.compile().tryProcess(new String[]{"-al"}));
+            assertEquals(ErrorCode.AMBIGUOUS_OPTION, error.code());
+            assertEquals(List.of("-all", "-also"), error.options());
+        }
+
+        @Test
+        public void shortOptionOfAClusterShouldBeReported() {
+            cmdLineParser.addFlag("-a", () -> {});
+            cmdLineParser.enableGnuSyntax();
+            var error = errorOf(cmdLineParser.compile().tryProcess(new String[]{"file", "-ax"}));
+            assertEquals(ErrorCode.UNKNOWN_OPTION, error.code());
+            assertEquals(1, error.tokenIndex());
+            assertEquals("-x", error.subject());
+        }
+
+        @Test
+        public void thrownErrorsShouldBeStackless() {
+            var parser = parser();
+            var exception = assertThrows(CmdLineArgumentException.class, () -> parser.process(new String[]{"-a", "-unknown"}));
+            assertEquals(0, exception.getStackTrace().length);
+            assertEquals("'-unknown' is not an option", exception.getMessage());
+            assertEquals(1, exception.error().tokenIndex());
+            assertEquals(ErrorCode.UNKNOWN_OPTION, exception.code());
+            var conflict = assertThrows(CmdLineStateException.class, () -> parser.process(new String[]{"-b", "-a"}));
+            assertEquals(0, conflict.getStackTrace().length);
+            assertEquals(List.of("-b"), conflict.error().options());
+        }
+
+        @Test
+        public void iteratorShouldReportTheIndexOfTheToken() {
+            var parser = parser();
+            var exception = assertThrows(CmdLineArgumentException.class, () -> parser.process(List.of("file", "-size", "4", "-unknown").iterator(), argument -> {}));
+            assertEquals(3, exception.error().tokenIndex());
+            var missing = assertThrows(CmdLineArgumentException.class, () -> parser.process(List.of("file", "-size").iterator(), argument -> {}));
+            assertEquals(1, missing.error().tokenIndex());
+        }
+
+        @Test
+        public void tryProcessShouldFillTheParseCache() {
+            cmdLineParser.addFlag("-a", () -> events.add("a"));
+            cmdLineParser.enableParseCache(10);
+            var parser = cmdLineParser.compile();
+            assertTrue(parser.tryProcess(new String[]{"-a"}).isSuccess());
+            assertTrue(parser.tryProcess(new String[]{"-a"}).isSuccess());
+            assertFalse(parser.tryProcess(new String[]{"-x"}).isSuccess());
+            assertEquals(new CompiledCmdLineParser.CacheStats(1, 2, 0, 1), parser.cacheStats().orElseThrow());
+            assertEquals(List.of("a", "a"), events);
+        }
+
+        @Test
+        public void tryProcessShouldBeCountedInTheMetrics() {
+            var parser = parser();
+            var metrics = cmdLineParser.enableMetrics();
+            cmdLineParser.tryProcess(new String[]{"-a", "-b"});
+            cmdLineParser.tryProcess(new String[]{"-a"});
+            assertNotSame(parser, cmdLineParser.compile());
+            assertEquals(2, metrics.getProcessCount());
+            assertEquals(Map.of(ErrorCode.CONFLICT, 1L), metrics.failureCounts());
+        }
+    }
+
+    @Nested
+    public class allErrorsTest {
+        private final List<String> events = new ArrayList<>();
+
+        private CompiledCmdLineParser parser() {
+            cmdLineParser.addFlag("-a", () -> events.add("a"));
+            cmdLineParser.addOption(new OptionsBuilder("-b", 0, params -> events.add("b")).conflictWith("-a").build());
+            cmdLineParser.addOption(new OptionsBuilder("-size", 1).setIntConsumer(size -> events.add("size" + size)).build());
+            cmdLineParser.addOption(new OptionsBuilder("-name", 1, params -> events.add("name")).isRequired().build());
+            cmdLineParser.enableAllErrors();
+            return cmdLineParser.compile();
+        }
+
+        private List<ParseError> errorsOf(ParseResult result) {
+            return assertInstanceOf(ParseResult.Failure.class, result).errors();
+        }
+
+        @Test
+        public void allTheErrorsShouldBeReportedInOrder() {
+            var errors = errorsOf(parser().tryProcess(new String[]{"-a", "-unknown", "-b", "file", "-size"}));
+            assertEquals(List.of(ErrorCode.UNKNOWN_OPTION, ErrorCode.CONFLICT, ErrorCode.MISSING_PARAMETERS, ErrorCode.MISSING_REQUIRED),
+                    errors.stream().map(ParseError::code).toList());
+            assertAll(
+                    () -> assertEquals(1, errors.get(0).tokenIndex()),
+                    () -> assertEquals("-unknown", errors.get(0).subject()),
+                    () -> assertEquals(2, errors.get(1).tokenIndex()),
+                    () -> assertEquals(List.of("-a"), errors.get(1).options()),
+                    () -> assertEquals(4, errors.get(2).tokenIndex()),
+                    () -> assertEquals("-size", errors.get(2).subject()),
+                    () -> assertEquals(-1, errors.get(3).tokenIndex()),
+                    () -> assertEquals(List.of("-name"), errors.get(3).options()),
+                    () -> assertEquals(List.of(), events)
+            );
+        }
+
+        @Test
+        public void optionMissingItsParametersShouldNotBeReportedAsMissing() {
+            var errors = errorsOf(parser().tryProcess(new String[]{"-size", "4", "-name"}));
+            assertEquals(1, errors.size());
+            assertEquals(ErrorCode.MISSING_PARAMETERS, errors.get(0).code());
+        }
+
+        @Test
+        public void firstErrorShouldBeTheOnlyOneByDefault() {
+            cmdLineParser.addFlag("-a", () -> {});
+            var errors = errorsOf(cmdLineParser.tryProcess(new String[]{"-x", "-y"}));
+            assertEquals(1, errors.size());
+            assertEquals("-x", errors.get(0).subject());
+        }
+
+        @Test
+        public void processShouldSuppressTheOtherErrors() {
+            var parser = parser();
+            var exception = assertThrows(CmdLineArgumentException.class, () -> parser.process(new String[]{"-x", "-a", "-b", "-name", "n"}));
+            assertEquals(1, exception.getSuppressed().length);
+            var conflict = assertInstanceOf(CmdLineStateException.class, exception.getSuppressed()[0]);
+            assertEquals(ErrorCode.CONFLICT, conflict.code());
+            assertEquals(List.of(), events);
+        }
+
+        @Test
+        public void noActionShouldRunBeforeTheLineIsValidated() {
+            var parser = parser();
+            assertThrows(IllegalArgumentException.class, () -> parser.process(new String[]{"-a", "-name", "n", "-unknown"}));
+            assertEquals(List.of(), events);
+            assertEquals(List.of("file"), parser.process(new String[]{"-a", "-name", "n", "file", "-size", "4"}));
+            assertEquals(List.of("a", "name", "size4"), events);
+        }
+
+        @Test
+        public void allTheBrokenRulesShouldBeReported() {
+            for (var name : List.of("-c", "-d", "-e")) {
+                cmdLineParser.addFlag(name, () -> {});
+            }
+            cmdLineParser.addOption(new OptionsBuilder("-f", 0, params -> {}).requires("-e").build());
+            cmdLineParser.requireExactlyOneOf("-c", "-d");
+            cmdLineParser.enableAllErrors();
+            var errors = errorsOf(cmdLineParser.tryProcess(new String[]{"-c", "-d", "-f"}));
+            assertEquals(List.of(ErrorCode.MISSING_REQUIREMENT, ErrorCode.GROUP), errors.stream().map(ParseError::code).toList());
+            assertEquals("-f", errors.get(0).subject());
+            assertEquals(List.of("-e"), errors.get(0).options());
+            assertEquals(List.of("-c", "-d"), errors.get(1).options());
+        }
+
+        @Test
+        public void clusterShouldReportEachUnknownShortOption() {
+            cmdLineParser.addFlag("-a", () -> {});
+            cmdLineParser.enableGnuSyntax();
+            cmdLineParser.enableAllErrors();
+            var errors = errorsOf(cmdLineParser.tryProcess(new String[]{"-xay", "--z=1"}));
+            assertEquals(List.of("-x", "-y", "--z"), errors.stream().map(ParseError::subject).toList());
+            assertEquals(List.of(0, 0, 1), errors.stream().map(ParseError::tokenIndex).toList());
+        }
+
+        @Test
+        public void cachedProcessShouldReportAllTheErrors() {
+            parser();
+            cmdLineParser.enableParseCache(4);
+            var parser = cmdLineParser.compile();
+            assertEquals(3, errorsOf(parser.tryProcess(new String[]{"-x", "-y"})).size());
+            var exception = assertThrows(CmdLineArgumentException.class, () -> parser.process(new String[]{"-x", "-y"}));
+            assertEquals(2, exception.getSuppressed().length);
+            assertEquals(new CompiledCmdLineParser.CacheStats(0, 2, 0, 0), parser.cacheStats().orElseThrow());
+        }
+    }
+}
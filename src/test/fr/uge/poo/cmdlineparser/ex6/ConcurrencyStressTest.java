@@ -0,0 +1,408 @@
+package fr.uge.poo.cmdlineparser.ex6;
+
+import fr.uge.poo.cmdlineparser.ex6.CmdLineParser.Option.OptionsBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Stress of a single registered parser shared by many threads, in the spirit of jcstress.
+ * <p>
+ * The same random mix of valid and invalid command lines is first run on one thread to get the
+ * reference outcome of each line : the arguments or the errors, and the actions which ran, traced
+ * per thread. The workers then run the lines all at once, starting together behind a gate, on
+ * platform threads and on virtual threads, that test is skipped if the runtime has none. Any
+ * outcome different from the reference is a race : a state shared between two sessions, or a cache
+ * returning the line of another call. While they run, a sampler records where the platform workers
+ * are blocked on a lock, the contention hot spots are published as report entries with the
+ * throughput of each run.
+ */
+class ConcurrencyStressTest {
+    private static final int NB_LINES = 64;
+    private static final int CALLS_PER_PLATFORM_THREAD = 2_000;
+    private static final int NB_VIRTUAL_TASKS = 256;
+    private static final int CALLS_PER_VIRTUAL_TASK = 100;
+
+    private static final String[] TOKENS = {
+            "-a", "-b", "-size", "4", "four", "-name", "-n", "bob", "-pair", "x", "y",
+            "file", "other", "-unknown", "-na", "-ab", "--level=3", "--level", "-"
+    };
+
+    /**
+     * The actions of the running thread, so a session can not see the actions of another one
+     */
+    private static final ThreadLocal<StringBuilder> TRACE = ThreadLocal.withInitial(StringBuilder::new);
+
+    private static ThreadMXBean threads;
+
+    private enum Config {
+        BASIC, GNU_SYNTAX_AND_ABBREVIATIONS, PARSE_CACHE, ALL_ERRORS_AND_METRICS
+    }
+
+    private enum Operation {
+        TRY_PROCESS, PROCESS, PARSE_APPLY
+    }
+
+    /**
+     * What a call did
+     *
+     * @param result the arguments or the errors
+     * @param trace the actions which ran, in order
+     */
+    private record Observed(String result, String trace) {
+    }
+
+    /**
+     * @param calls number of calls, by all the workers
+     * @param nanos duration of the run
+     * @param blockedCount number of times the platform workers blocked on a monitor
+     * @param blockedMillis time the platform workers spent blocked, -1 if it is not measured
+     * @param hotSpots number of samples of a blocked worker, by frame of the parser and lock
+     */
+    private record Report(String name, long calls, long nanos, long blockedCount, long blockedMillis, Map<String, Long> hotSpots) {
+        @Override
+        public String toString() {
+            var report = new StringBuilder();
+            report.append(String.format("%-50s %9d calls %8.0f calls/ms, blocked %d times %d ms%n",
+                    name, calls, calls / (nanos / 1_000_000.0), blockedCount, blockedMillis));
+            hotSpots.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(5)
+                    .forEach(entry -> report.append(String.format("    %6d samples  %s%n", entry.getValue(), entry.getKey())));
+            return report.toString();
+        }
+    }
+
+    @BeforeAll
+    public static void enableContentionMonitoring() {
+        threads = ManagementFactory.getThreadMXBean();
+        if (threads.isThreadContentionMonitoringSupported())
+            threads.setThreadContentionMonitoringEnabled(true);
+    }
+
+    private static CmdLineParser newParser(Config config) {
+        var parser = new CmdLineParser();
+        parser.addFlag("-a", () -> TRACE.get().append("a;"));
+        parser.addOption(new OptionsBuilder("-b", 0, params -> TRACE.get().append("b;")).conflictWith("-a").build());
+        parser.addOption(new OptionsBuilder("-size", 1).setIntConsumer(size -> TRACE.get().append("size").append(size).append(';')).build());
+        parser.addOption(new OptionsBuilder("-name", 1, params -> TRACE.get().append("name=").append(params.get(0)).append(';'))
+                .addAliases("-n").build());
+        parser.addOption(new OptionsBuilder("-pair", 2, params -> TRACE.get().append("pair=").append(params).append(';'))
+                .requires("-name").build());
+        parser.addOption(new OptionsBuilder("--level", 1).setIntConsumer(level -> TRACE.get().append("level").append(level).append(';')).build());
+        switch (config) {
+            case BASIC -> {}
+            case GNU_SYNTAX_AND_ABBREVIATIONS -> {
+                parser.enableGnuSyntax();
+                parser.enableAbbreviations();
+            }
+            // fewer entries than lines, so the workers also race on the evictions
+            case PARSE_CACHE -> parser.enableParseCache(8);
+            case ALL_ERRORS_AND_METRICS -> {
+                parser.enableAllErrors();
+                parser.enableMetrics();
+            }
+        }
+        return parser;
+    }
+
+    private static List<String[]> lines() {
+        var random = new Random(42);
+        return IntStream.range(0, NB_LINES)
+                .mapToObj(i -> random.ints(random.nextInt(7), 0, TOKENS.length).mapToObj(token -> TOKENS[token]).toArray(String[]::new))
+                .toList();
+    }
+
+    private static String resultOf(RuntimeException e) {
+        if (!(e instanceof CmdLineError error))
+            return e.toString();
+        return "KO " + Stream.concat(Stream.of(error.error()), Arrays.stream(e.getSuppressed()).map(suppressed -> ((CmdLineError) suppressed).error()))
+                .map(ParseError::toString)
+                .collect(Collectors.joining(" | "));
+    }
+
+    private static String resultOf(ParseResult result) {
+        if (result instanceof ParseResult.Failure failure)
+            return "KO " + failure.errors().stream().map(ParseError::toString).collect(Collectors.joining(" | "));
+        return "OK " + result.orElseThrow();
+    }
+
+    private static Observed call(CmdLineParser parser, Operation operation, String[] line) {
+        var trace = TRACE.get();
+        trace.setLength(0);
+        String result;
+        try {
+            result = switch (operation) {
+                case TRY_PROCESS -> resultOf(parser.tryProcess(line));
+                case PROCESS -> "OK " + parser.process(line);
+                case PARSE_APPLY -> "OK " + parser.apply(parser.parse(line));
+            };
+        } catch (RuntimeException e) {
+            result = resultOf(e);
+        }
+        return new Observed(result, trace.toString());
+    }
+
+    /**
+     * @return the outcome of each line for each operation, computed on a parser of its own
+     */
+    private static Observed[][] references(Config config, List<String[]> lines) {
+        var parser = newParser(config);
+        var operations = Operation.values();
+        var references = new Observed[operations.length][lines.size()];
+        for (var operation : operations) {
+            for (int i = 0; i < lines.size(); i++) {
+                references[operation.ordinal()][i] = call(parser, operation, lines.get(i));
+            }
+        }
+        return references;
+    }
+
+    /**
+     * A virtual thread per task, or empty if the runtime has no virtual threads (they need Java 21, or 19 with preview enabled)
+     */
+    private static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        try {
+            var factory = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+            return Optional.of((ExecutorService) factory.invokeExact());
+        } catch (NoSuchMethodException | IllegalAccessException | UnsupportedOperationException e) {
+            return Optional.empty();
+        } catch (Throwable e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Where the parser is blocked in the stack, and on which lock, or null if the thread is not blocked by the parser
+     */
+    private static String hotSpotOf(ThreadInfo info) {
+        if (info == null || info.getLockName() == null || info.getThreadState() == Thread.State.RUNNABLE)
+            return null;
+        for (var frame : info.getStackTrace()) {
+            if (frame.getClassName().startsWith(CmdLineParser.class.getPackageName()) && !frame.getClassName().startsWith(ConcurrencyStressTest.class.getName()))
+                return frame + " " + info.getThreadState() + " on " + info.getLockName().replaceAll("@\\p{XDigit}+$", "");
+        }
+        return null;
+    }
+
+    /**
+     * Run the lines from all the tasks at once and compare each outcome to the reference
+     *
+     * @param parser shared by all the tasks
+     * @param executor runs the tasks, it is shut down at the end
+     * @param mismatches receives the outcomes different from the reference
+     * @return the throughput and the contention of the run
+     */
+    private static Report stress(String name, CmdLineParser parser, ExecutorService executor, int nbTasks, int callsPerTask,
+                                 List<String[]> lines, Observed[][] references, ConcurrentLinkedQueue<String> mismatches) throws Exception {
+        var operations = Operation.values();
+        var gate = new CountDownLatch(1);
+        var workers = ConcurrentHashMap.<Thread>newKeySet();
+        var futures = new ArrayList<Future<?>>();
+        for (int task = 0; task < nbTasks; task++) {
+            var first = task * 7;
+            futures.add(executor.submit(() -> {
+                workers.add(Thread.currentThread());
+                gate.await();
+                for (int i = 0; i < callsPerTask; i++) {
+                    // each task walks all the lines and operations from its own start
+                    var index = (first + i) % (lines.size() * operations.length);
+                    var operation = operations[index / lines.size()];
+                    var line = lines.get(index % lines.size());
+                    var observed = call(parser, operation, line);
+                    var reference = references[operation.ordinal()][index % lines.size()];
+                    if (!observed.equals(reference))
+                        mismatches.add(operation + " " + Arrays.toString(line) + " gave " + observed + " instead of " + reference);
+                }
+                return null;
+            }));
+        }
+        var hotSpots = new ConcurrentHashMap<String, Long>();
+        var sampling = new CountDownLatch(1);
+        var sampler = new Thread(() -> {
+            try {
+                while (!sampling.await(1, TimeUnit.MILLISECONDS)) {
+                    var ids = workers.stream().mapToLong(Thread::getId).toArray();
+                    for (var info : threads.getThreadInfo(ids, 16)) {
+                        var hotSpot = hotSpotOf(info);
+                        if (hotSpot != null)
+                            hotSpots.merge(hotSpot, 1L, Long::sum);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // stop sampling
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+        var start = System.nanoTime();
+        gate.countDown();
+        for (var future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        var nanos = System.nanoTime() - start;
+        sampling.countDown();
+        sampler.join();
+        // the workers are still alive until the executor is shut down
+        var blockedCount = 0L;
+        var blockedMillis = threads.isThreadContentionMonitoringEnabled() ? 0L : -1L;
+        for (var worker : workers) {
+            var info = threads.getThreadInfo(worker.getId());
+            if (info != null) {
+                blockedCount += info.getBlockedCount();
+                if (blockedMillis != -1)
+                    blockedMillis += info.getBlockedTime();
+            }
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        return new Report(name, (long) nbTasks * callsPerTask, nanos, blockedCount, blockedMillis, hotSpots);
+    }
+
+    /**
+     * Check the counters of the shared parser against the calls of the run,
+     * then that the parser still gives the reference outcomes once the run is over
+     */
+    private static void checkState(Config config, CmdLineParser parser, int nbTasks, int callsPerTask, List<String[]> lines, Observed[][] references) {
+        var operations = Operation.values();
+        var processed = 0L;
+        var failed = 0L;
+        for (int task = 0; task < nbTasks; task++) {
+            for (int i = 0; i < callsPerTask; i++) {
+                var index = (task * 7 + i) % (lines.size() * operations.length);
+                var operation = operations[index / lines.size()];
+                if (operation == Operation.PARSE_APPLY)
+                    continue;
+                processed++;
+                if (references[operation.ordinal()][index % lines.size()].result.startsWith("KO"))
+                    failed++;
+            }
+        }
+        if (config == Config.PARSE_CACHE) {
+            var stats = parser.cacheStats().orElseThrow();
+            assertEquals(processed, stats.hits() + stats.misses());
+            assertTrue(stats.size() <= 8, "" + stats);
+        }
+        if (config == Config.ALL_ERRORS_AND_METRICS) {
+            var metrics = parser.metrics().orElseThrow();
+            assertEquals(processed, metrics.getProcessCount());
+            assertEquals(failed, metrics.getFailureCount());
+        }
+        for (var operation : operations) {
+            for (int i = 0; i < lines.size(); i++) {
+                assertEquals(references[operation.ordinal()][i], call(parser, operation, lines.get(i)), config + " " + operation + " " + Arrays.toString(lines.get(i)));
+            }
+        }
+    }
+
+    private static void assertNoMismatch(String name, ConcurrentLinkedQueue<String> mismatches) {
+        assertTrue(mismatches.isEmpty(), () -> name + ": " + mismatches.size() + " outcomes differ from the reference, first ones:\n"
+                + mismatches.stream().limit(10).collect(Collectors.joining("\n")));
+    }
+
+    @Test
+    public void referencesShouldMixValidAndInvalidLines() {
+        var references = references(Config.BASIC, lines());
+        var results = Arrays.stream(references).flatMap(Arrays::stream).map(Observed::result).toList();
+        assertTrue(results.stream().anyMatch(result -> result.startsWith("OK")));
+        assertTrue(results.stream().anyMatch(result -> result.startsWith("KO")));
+        assertEquals(references(Config.BASIC, lines())[0][NB_LINES - 1], references[0][NB_LINES - 1]);
+    }
+
+    @Test
+    public void platformThreadsShouldGetTheReferenceOutcomes(TestReporter testReporter) throws Exception {
+        var nbThreads = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+        var lines = lines();
+        for (var config : Config.values()) {
+            var references = references(config, lines);
+            var parser = newParser(config);
+            var mismatches = new ConcurrentLinkedQueue<String>();
+            var name = config + " on " + nbThreads + " platform threads";
+            var report = stress(name, parser, Executors.newFixedThreadPool(nbThreads), nbThreads, CALLS_PER_PLATFORM_THREAD, lines, references, mismatches);
+            testReporter.publishEntry(name, report.toString());
+            assertNoMismatch(name, mismatches);
+            checkState(config, parser, nbThreads, CALLS_PER_PLATFORM_THREAD, lines, references);
+        }
+    }
+
+    @Test
+    public void virtualThreadsShouldGetTheReferenceOutcomes(TestReporter testReporter) throws Exception {
+        var lines = lines();
+        for (var config : Config.values()) {
+            var executor = newVirtualThreadPerTaskExecutor();
+            assumeTrue(executor.isPresent(), "the runtime has no virtual threads");
+            var references = references(config, lines);
+            var parser = newParser(config);
+            var mismatches = new ConcurrentLinkedQueue<String>();
+            var name = config + " on " + NB_VIRTUAL_TASKS + " virtual threads";
+            var report = stress(name, parser, executor.orElseThrow(), NB_VIRTUAL_TASKS, CALLS_PER_VIRTUAL_TASK, lines, references, mismatches);
+            testReporter.publishEntry(name, report.toString());
+            assertNoMismatch(name, mismatches);
+            checkState(config, parser, NB_VIRTUAL_TASKS, CALLS_PER_VIRTUAL_TASK, lines, references);
+        }
+    }
+
+    @Test
+    public void firstCallsShouldRaceOnTheCompilation() throws Exception {
+        var lines = lines();
+        var nbThreads = 8;
+        for (var config : Config.values()) {
+            var references = references(config, lines);
+            for (int round = 0; round < 20; round++) {
+                // a fresh parser each round, so the workers race on its first compilation
+                var parser = newParser(config);
+                var mismatches = new ConcurrentLinkedQueue<String>();
+                var name = config + " first calls, round " + round;
+                stress(name, parser, Executors.newFixedThreadPool(nbThreads), nbThreads, 1, lines, references, mismatches);
+                assertNoMismatch(name, mismatches);
+            }
+        }
+    }
+
+    @Test
+    public void concurrentBatchesShouldGetTheReferenceOutcomes() throws Exception {
+        var lines = lines();
+        for (var config : Config.values()) {
+            var references = references(config, lines);
+            var parser = newParser(config);
+            var executor = Executors.newFixedThreadPool(4);
+            var futures = IntStream.range(0, 4).mapToObj(i -> executor.submit(() -> parser.processAll(lines))).toList();
+            for (var future : futures) {
+                var outcomes = future.get(1, TimeUnit.MINUTES);
+                for (int i = 0; i < lines.size(); i++) {
+                    var outcome = outcomes.get(i);
+                    var result = outcome.isSuccess() ? "OK " + outcome.arguments() : resultOf(outcome.error());
+                    assertEquals(references[Operation.TRY_PROCESS.ordinal()][i].result, result, config + " " + Arrays.toString(lines.get(i)));
+                }
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        }
+    }
+}